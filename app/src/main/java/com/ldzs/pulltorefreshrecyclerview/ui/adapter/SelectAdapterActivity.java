@@ -17,7 +17,7 @@ import com.ldzs.recyclerlibrary.PullToRefreshRecyclerView;
 import com.ldzs.recyclerlibrary.anim.SlideInLeftAnimator;
 import com.ldzs.recyclerlibrary.callback.OnItemClickListener;
 
-import java.util.ArrayList;
+import java.util.List;
 
 /**
  * Created by cz on 16/1/23.
@@ -65,7 +65,7 @@ public class SelectAdapterActivity extends AppCompatActivity {
         });
         mRecyclerView.setOnMultiSelectListener(new PullToRefreshRecyclerView.OnMultiSelectListener() {
             @Override
-            public void onMultiSelect(View v, ArrayList<Integer> selectPositions,int lastSelectCount,int maxCount) {
+            public void onMultiSelect(View v, List<Integer> selectPositions,int lastSelectCount,int maxCount) {
                 if(lastSelectCount<maxCount){
                     Toast.makeText(getApplicationContext(), "MultiSelect:" + selectPositions, Toast.LENGTH_SHORT).show();
                 } else {
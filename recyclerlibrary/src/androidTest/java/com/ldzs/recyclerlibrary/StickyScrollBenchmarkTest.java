@@ -0,0 +1,152 @@
+package com.ldzs.recyclerlibrary;
+
+import android.app.Activity;
+import android.content.Context;
+import android.support.v7.widget.GridLayoutManager;
+import android.support.v7.widget.RecyclerView;
+import android.test.ActivityInstrumentationTestCase2;
+import android.util.Log;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.TextView;
+
+import com.ldzs.recyclerlibrary.adapter.CacheViewHolder;
+import com.ldzs.recyclerlibrary.adapter.GridStickyAdapter;
+import com.ldzs.recyclerlibrary.callback.BinaryCondition;
+import com.ldzs.recyclerlibrary.strategy.GroupingStrategy;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * 分组悬停滑动每帧耗时基准
+ * 已布局的网格列表附加到窗口,逐帧scrollBy,每帧包含布局填充与onScrolled内StickyScrollListener#updateStickyView
+ * 同一列表不设置StickyView时的每帧耗时为基线,两者之差为updateStickyView每帧耗时
+ * 耗时只输出到logcat,不作断言
+ */
+public class StickyScrollBenchmarkTest extends ActivityInstrumentationTestCase2<TestActivity> {
+    private static final String TAG = "StickyScrollBenchmark";
+    private static final int ITEM_COUNT = 20000;
+    private static final int SPAN_COUNT = 3;
+    private static final int ITEM_HEIGHT = 60;
+    private static final int FRAME_COUNT = 600;
+    private static final int FRAME_OFFSET = 37;
+    private static final int WARM_UP_COUNT = 3;
+
+    public StickyScrollBenchmarkTest() {
+        super(TestActivity.class);
+    }
+
+    public void testUpdateStickyViewPerFrame() throws Throwable {
+        List<Integer> items = new ArrayList<>();
+        Random random = new Random(1);
+        for (int group = 0; items.size() < ITEM_COUNT; group++) {
+            int size = 1 + random.nextInt(40);
+            for (int i = 0; i < size && items.size() < ITEM_COUNT; i++) {
+                items.add(group);
+            }
+        }
+        long baseTime = measureFrameTime(items, false);
+        long stickyTime = measureFrameTime(items, true);
+        Log.i(TAG, "items:" + ITEM_COUNT + " span:" + SPAN_COUNT + " frames:" + FRAME_COUNT
+                + " without sticky:" + baseTime / 1000 + "us/frame"
+                + " with sticky:" + stickyTime / 1000 + "us/frame"
+                + " updateStickyView:" + (stickyTime - baseTime) / 1000 + "us/frame");
+    }
+
+    /**
+     * 列表附加到窗口并完成布局后,下滑FRAME_COUNT帧再上滑回去,取最后一轮平均每帧耗时
+     * @return 每帧纳秒
+     */
+    private long measureFrameTime(final List<Integer> items, final boolean sticky) throws Throwable {
+        final Activity activity = getActivity();
+        final PullToRefreshStickyRecyclerView[] listView = new PullToRefreshStickyRecyclerView[1];
+        runTestOnUiThread(new Runnable() {
+            @Override
+            public void run() {
+                PullToRefreshStickyRecyclerView view = new PullToRefreshStickyRecyclerView(activity);
+                //与布局加载相同,由onFinishInflate添加列表
+                view.onFinishInflate();
+                view.setLayoutManager(new GridLayoutManager(activity, SPAN_COUNT));
+                if (sticky) {
+                    view.setStickyView(newTextView(activity));
+                }
+                view.setAdapter(new GridAdapter(activity, new ArrayList<>(items)));
+                activity.setContentView(view);
+                listView[0] = view;
+            }
+        });
+        getInstrumentation().waitForIdleSync();
+        final RecyclerView recyclerView = findRecyclerView(listView[0]);
+        assertNotNull(recyclerView);
+        final long[] frameTime = new long[1];
+        for (int round = 0; round <= WARM_UP_COUNT; round++) {
+            runTestOnUiThread(new Runnable() {
+                @Override
+                public void run() {
+                    long start = System.nanoTime();
+                    for (int frame = 0; frame < FRAME_COUNT; frame++) {
+                        recyclerView.scrollBy(0, FRAME_OFFSET);
+                    }
+                    for (int frame = 0; frame < FRAME_COUNT; frame++) {
+                        recyclerView.scrollBy(0, -FRAME_OFFSET);
+                    }
+                    frameTime[0] = (System.nanoTime() - start) / (2 * FRAME_COUNT);
+                }
+            });
+            getInstrumentation().waitForIdleSync();
+        }
+        return frameTime[0];
+    }
+
+    private static RecyclerView findRecyclerView(ViewGroup parent) {
+        for (int i = 0; i < parent.getChildCount(); i++) {
+            View child = parent.getChildAt(i);
+            if (child instanceof RecyclerView) {
+                return (RecyclerView) child;
+            }
+        }
+        return null;
+    }
+
+    private static TextView newTextView(Context context) {
+        TextView textView = new TextView(context);
+        textView.setLayoutParams(new ViewGroup.LayoutParams(ViewGroup.LayoutParams.MATCH_PARENT, ITEM_HEIGHT));
+        return textView;
+    }
+
+    private static class GridAdapter extends GridStickyAdapter<Integer> {
+        private final GroupingStrategy groupingStrategy;
+
+        GridAdapter(Context context, List<Integer> items) {
+            super(context, items);
+            groupingStrategy = GroupingStrategy.of(this).reduce(new BinaryCondition<Integer>() {
+                @Override
+                public boolean apply(Integer t1, Integer t2) {
+                    return !t1.equals(t2);
+                }
+            });
+        }
+
+        @Override
+        public CacheViewHolder onCreateViewHolder(ViewGroup parent, int viewType) {
+            return new CacheViewHolder(newTextView(parent.getContext()));
+        }
+
+        @Override
+        public void onBindViewHolder(CacheViewHolder holder, int position) {
+            ((TextView) holder.itemView).setText(String.valueOf(getItem(position)));
+        }
+
+        @Override
+        public void initStickyView(View view, int position) {
+            ((TextView) view).setText(String.valueOf(getItem(position)));
+        }
+
+        @Override
+        public GroupingStrategy getGroupingStrategy() {
+            return groupingStrategy;
+        }
+    }
+}
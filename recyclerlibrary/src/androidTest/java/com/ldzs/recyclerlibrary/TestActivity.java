@@ -0,0 +1,9 @@
+package com.ldzs.recyclerlibrary;
+
+import android.app.Activity;
+
+/**
+ * 测试用空界面,使列表附加到窗口,滑动/动画按帧执行
+ */
+public class TestActivity extends Activity {
+}
@@ -0,0 +1,174 @@
+package com.ldzs.recyclerlibrary.adapter.drag;
+
+import android.content.Context;
+import android.support.v7.widget.RecyclerView;
+import android.test.InstrumentationTestCase;
+import android.view.View;
+import android.view.ViewGroup;
+
+import com.ldzs.recyclerlibrary.adapter.BaseViewHolder;
+import com.ldzs.recyclerlibrary.callback.SlotBinder;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeSet;
+
+/**
+ * 子条目更新/移动通知拆分测试
+ * 随机动态条目/规则条目与子条目操作,通知结果与按列表模型重新计算的全局条目逐一比较
+ */
+public class DynamicAdapterNotifyTest extends InstrumentationTestCase {
+    private Context context;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        context = getInstrumentation().getTargetContext();
+    }
+
+    /**
+     * 更新范围只覆盖子条目,每个子条目只通知一次,不包含动态/规则条目
+     */
+    public void testChangedRangesSkipFixedRows() {
+        Random random = new Random(1);
+        for (int round = 0; round < 2000; round++) {
+            List<Integer> children = createChildren(random);
+            DynamicAdapter adapter = createAdapter(random, children);
+            RecordObserver observer = new RecordObserver();
+            adapter.registerAdapterDataObserver(observer);
+            int start = random.nextInt(children.size());
+            int count = 1 + random.nextInt(children.size() - start);
+            adapter.childItemRangeChanged(start, count, null);
+
+            TreeSet<Integer> expected = new TreeSet<>();
+            for (int i = start; i < start + count; i++) {
+                expected.add(adapter.toGlobalPosition(i));
+            }
+            TreeSet<Integer> notified = new TreeSet<>();
+            int lastEnd = -1;
+            for (int[] event : observer.changes) {
+                //相邻范围应合并为一次通知
+                assertTrue(event[0] != lastEnd);
+                for (int position = event[0]; position < event[0] + event[1]; position++) {
+                    assertTrue(notified.add(position));
+                }
+                lastEnd = event[0] + event[1];
+            }
+            assertEquals(expected, notified);
+            assertTrue(observer.moves.isEmpty());
+        }
+    }
+
+    /**
+     * 按通知顺序移动旧的全局条目,结果与移动后重新计算的全局条目一致,动态/规则条目保持原位置
+     */
+    public void testMovesKeepFixedRowsInPlace() {
+        Random random = new Random(2);
+        for (int round = 0; round < 2000; round++) {
+            List<Integer> children = createChildren(random);
+            DynamicAdapter adapter = createAdapter(random, children);
+            List<Integer> before = globalItems(adapter, children);
+            RecordObserver observer = new RecordObserver();
+            adapter.registerAdapterDataObserver(observer);
+            int size = children.size();
+            int count = 1 + random.nextInt(Math.max(1, size / 3));
+            int from = random.nextInt(size - count + 1);
+            int to = random.nextInt(size - count + 1);
+            List<Integer> block = new ArrayList<>(children.subList(from, from + count));
+            children.subList(from, from + count).clear();
+            children.addAll(to, block);
+            adapter.childItemRangeMoved(from, to, count);
+
+            List<Integer> replay = new ArrayList<>(before);
+            for (int[] move : observer.moves) {
+                replay.add(move[1], replay.remove(move[0]));
+            }
+            assertEquals(globalItems(adapter, children), replay);
+            assertTrue(observer.changes.isEmpty());
+        }
+    }
+
+    private static List<Integer> createChildren(Random random) {
+        int size = 1 + random.nextInt(30);
+        List<Integer> children = new ArrayList<>();
+        for (int i = 0; i < size; i++) {
+            children.add(i);
+        }
+        return children;
+    }
+
+    private DynamicAdapter createAdapter(Random random, List<Integer> children) {
+        DynamicAdapter adapter = new DynamicAdapter(new ListAdapter(children));
+        if (random.nextBoolean()) {
+            adapter.setSlotRule(new SlotRule(1 + random.nextInt(4), 1 + random.nextInt(4)), new EmptySlotBinder());
+        }
+        int dynamicCount = random.nextInt(6);
+        for (int i = 0; i < dynamicCount; i++) {
+            adapter.addDynamicView(new View(context), random.nextInt(adapter.getItemCount() + 1));
+        }
+        return adapter;
+    }
+
+    /**
+     * 全局条目:子条目为其数据,动态/规则条目为-1-位置
+     */
+    private static List<Integer> globalItems(DynamicAdapter adapter, List<Integer> children) {
+        List<Integer> items = new ArrayList<>();
+        int itemCount = adapter.getItemCount();
+        for (int position = 0; position < itemCount; position++) {
+            int childPosition = adapter.toChildPosition(position);
+            items.add(RecyclerView.NO_POSITION == childPosition ? -1 - position : children.get(childPosition));
+        }
+        return items;
+    }
+
+    private static class ListAdapter extends RecyclerView.Adapter<BaseViewHolder> {
+        private final List<Integer> items;
+
+        ListAdapter(List<Integer> items) {
+            this.items = items;
+        }
+
+        @Override
+        public BaseViewHolder onCreateViewHolder(ViewGroup parent, int viewType) {
+            return new BaseViewHolder(new View(parent.getContext()));
+        }
+
+        @Override
+        public void onBindViewHolder(BaseViewHolder holder, int position) {
+        }
+
+        @Override
+        public int getItemCount() {
+            return items.size();
+        }
+    }
+
+    private static class EmptySlotBinder implements SlotBinder<BaseViewHolder> {
+        @Override
+        public BaseViewHolder onCreateSlotViewHolder(ViewGroup parent) {
+            return new BaseViewHolder(new View(parent.getContext()));
+        }
+
+        @Override
+        public void onBindSlotViewHolder(BaseViewHolder holder, int slotIndex) {
+        }
+    }
+
+    private static class RecordObserver extends RecyclerView.AdapterDataObserver {
+        final List<int[]> changes = new ArrayList<>();
+        final List<int[]> moves = new ArrayList<>();
+
+        @Override
+        public void onItemRangeChanged(int positionStart, int itemCount) {
+            changes.add(new int[]{positionStart, itemCount});
+        }
+
+        @Override
+        public void onItemRangeMoved(int fromPosition, int toPosition, int itemCount) {
+            assertEquals(1, itemCount);
+            moves.add(new int[]{fromPosition, toPosition});
+        }
+    }
+}
@@ -0,0 +1,226 @@
+package com.ldzs.recyclerlibrary.adapter.drag;
+
+import android.app.Activity;
+import android.content.Context;
+import android.support.v7.widget.LinearLayoutManager;
+import android.support.v7.widget.RecyclerView;
+import android.test.ActivityInstrumentationTestCase2;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.FrameLayout;
+import android.widget.TextView;
+
+import com.ldzs.recyclerlibrary.TestActivity;
+import com.ldzs.recyclerlibrary.adapter.BaseViewHolder;
+import com.ldzs.recyclerlibrary.adapter.DynamicViewHolder;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * 动态条目插入回归测试
+ * 之前同一个动态view作为多个Holder的itemView,notifyItemInserted后执行动画时报错:
+ * Called removeDetachedView with a view which is not flagged as tmp detached
+ */
+public class DynamicAdapterTest extends ActivityInstrumentationTestCase2<TestActivity> {
+    private static final long IDLE_TIMEOUT = 5000;
+    private Context context;
+
+    public DynamicAdapterTest() {
+        super(TestActivity.class);
+    }
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        context = getInstrumentation().getTargetContext();
+    }
+
+    /**
+     * 同一动态条目绑定到两个Holder时,view只存在于最后绑定的容器内
+     */
+    public void testDynamicHoldersDoNotShareView() {
+        DynamicAdapter adapter = new DynamicAdapter(new TextAdapter(5));
+        View view = new View(context);
+        adapter.addDynamicView(view, 2);
+        RecyclerView recyclerView = new RecyclerView(context);
+        int viewType = adapter.getItemViewType(2);
+        RecyclerView.ViewHolder first = adapter.createViewHolder(recyclerView, viewType);
+        RecyclerView.ViewHolder second = adapter.createViewHolder(recyclerView, viewType);
+        assertTrue(first instanceof DynamicViewHolder);
+        assertNotSame(first.itemView, second.itemView);
+        adapter.bindViewHolder(first, 2);
+        assertSame(first.itemView, view.getParent());
+        adapter.bindViewHolder(second, 2);
+        assertSame(second.itemView, view.getParent());
+        assertEquals(0, ((FrameLayout) first.itemView).getChildCount());
+    }
+
+    /**
+     * 添加动态条目只通知插入,之后的动态条目移回原位置,不再整体刷新
+     */
+    public void testAddDynamicViewNotifiesInsert() {
+        DynamicAdapter adapter = new DynamicAdapter(new TextAdapter(5));
+        adapter.addDynamicView(new View(context), 4);
+        RecordObserver observer = new RecordObserver();
+        adapter.registerAdapterDataObserver(observer);
+        adapter.addDynamicView(new View(context), 2);
+        assertEquals(7, adapter.getItemCount());
+        assertEquals(2, observer.events.size());
+        assertEquals("insert 2 1", observer.events.get(0));
+        assertEquals("move 5 4", observer.events.get(1));
+        assertEquals(2, adapter.getDynamicPosition(0));
+        assertEquals(4, adapter.getDynamicPosition(1));
+    }
+
+    /**
+     * 列表附加到窗口,惯性滑动(SETTLING)中插入/移除动态条目,插入/移除/移动动画与滑动同时执行,
+     * 期间新旧Holder同时存在,旧Holder处于tmp detached/消失动画状态,不能抛出异常(主线程异常会使测试进程崩溃)
+     * 滑动与动画结束后,每个动态view只在一个容器内,可见动态条目容器均持有自己的view
+     */
+    public void testInsertAndRemoveWhileScrolling() throws Throwable {
+        final Activity activity = getActivity();
+        final RecyclerView recyclerView = new RecyclerView(activity);
+        final LinearLayoutManager layoutManager = new LinearLayoutManager(activity);
+        final DynamicAdapter adapter = new DynamicAdapter(new TextAdapter(500));
+        final List<View> views = new ArrayList<>();
+        final Random random = new Random(1);
+        final int[] settlingCount = new int[1];
+        runTestOnUiThread(new Runnable() {
+            @Override
+            public void run() {
+                recyclerView.setLayoutManager(layoutManager);
+                recyclerView.setAdapter(adapter);
+                activity.setContentView(recyclerView);
+            }
+        });
+        getInstrumentation().waitForIdleSync();
+        for (int round = 0; round < 6; round++) {
+            final int velocity = 0 == round % 2 ? 6000 : -6000;
+            runTestOnUiThread(new Runnable() {
+                @Override
+                public void run() {
+                    recyclerView.fling(0, velocity);
+                }
+            });
+            for (int frame = 0; frame < 30; frame++) {
+                runTestOnUiThread(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (RecyclerView.SCROLL_STATE_SETTLING != recyclerView.getScrollState()) return;
+                        settlingCount[0]++;
+                        int first = layoutManager.findFirstVisibleItemPosition();
+                        if (views.isEmpty() || random.nextBoolean()) {
+                            //插入到可见范围内,其后条目执行移动动画
+                            TextView view = new TextView(activity);
+                            view.setLayoutParams(new ViewGroup.LayoutParams(ViewGroup.LayoutParams.MATCH_PARENT, 60));
+                            adapter.addDynamicView(view, Math.max(0, first) + 1 + random.nextInt(3));
+                            if (-1 != adapter.indexOfDynamicView(view)) {
+                                views.add(view);
+                            }
+                        } else {
+                            adapter.removeDynamicView(views.remove(random.nextInt(views.size())));
+                        }
+                    }
+                });
+                Thread.sleep(16);
+            }
+            waitForIdle(recyclerView);
+        }
+        assertTrue(0 < settlingCount[0]);
+        runTestOnUiThread(new Runnable() {
+            @Override
+            public void run() {
+                Set<View> attachedViews = Collections.newSetFromMap(new IdentityHashMap<View, Boolean>());
+                for (int i = 0; i < recyclerView.getChildCount(); i++) {
+                    RecyclerView.ViewHolder holder = recyclerView.getChildViewHolder(recyclerView.getChildAt(i));
+                    if (holder instanceof DynamicViewHolder) {
+                        FrameLayout container = (FrameLayout) holder.itemView;
+                        assertEquals(1, container.getChildCount());
+                        View view = container.getChildAt(0);
+                        assertTrue(views.contains(view));
+                        assertTrue(attachedViews.add(view));
+                    }
+                }
+                for (View view : views) {
+                    ViewGroup parent = (ViewGroup) view.getParent();
+                    assertTrue(null == parent || 1 == parent.getChildCount());
+                }
+            }
+        });
+    }
+
+    /**
+     * 等待滑动停止且条目动画结束
+     */
+    private void waitForIdle(final RecyclerView recyclerView) throws Throwable {
+        final boolean[] idle = new boolean[1];
+        long start = System.currentTimeMillis();
+        while (!idle[0]) {
+            assertTrue(System.currentTimeMillis() - start < IDLE_TIMEOUT);
+            Thread.sleep(16);
+            runTestOnUiThread(new Runnable() {
+                @Override
+                public void run() {
+                    RecyclerView.ItemAnimator itemAnimator = recyclerView.getItemAnimator();
+                    idle[0] = RecyclerView.SCROLL_STATE_IDLE == recyclerView.getScrollState()
+                            && (null == itemAnimator || !itemAnimator.isRunning())
+                            && !recyclerView.isLayoutRequested();
+                }
+            });
+        }
+    }
+
+    private static class TextAdapter extends RecyclerView.Adapter<BaseViewHolder> {
+        private final int count;
+
+        TextAdapter(int count) {
+            this.count = count;
+        }
+
+        @Override
+        public BaseViewHolder onCreateViewHolder(ViewGroup parent, int viewType) {
+            TextView textView = new TextView(parent.getContext());
+            textView.setLayoutParams(new RecyclerView.LayoutParams(ViewGroup.LayoutParams.MATCH_PARENT, 40));
+            return new BaseViewHolder(textView);
+        }
+
+        @Override
+        public void onBindViewHolder(BaseViewHolder holder, int position) {
+            ((TextView) holder.itemView).setText(String.valueOf(position));
+        }
+
+        @Override
+        public int getItemCount() {
+            return count;
+        }
+    }
+
+    private static class RecordObserver extends RecyclerView.AdapterDataObserver {
+        final List<String> events = new ArrayList<>();
+
+        @Override
+        public void onChanged() {
+            events.add("changed");
+        }
+
+        @Override
+        public void onItemRangeInserted(int positionStart, int itemCount) {
+            events.add("insert " + positionStart + " " + itemCount);
+        }
+
+        @Override
+        public void onItemRangeRemoved(int positionStart, int itemCount) {
+            events.add("remove " + positionStart + " " + itemCount);
+        }
+
+        @Override
+        public void onItemRangeMoved(int fromPosition, int toPosition, int itemCount) {
+            events.add("move " + fromPosition + " " + toPosition);
+        }
+    }
+}
@@ -0,0 +1,104 @@
+package com.ldzs.recyclerlibrary.strategy;
+
+import android.content.Context;
+import android.support.v7.widget.RecyclerView;
+import android.test.InstrumentationTestCase;
+import android.util.Log;
+import android.view.ViewGroup;
+import android.widget.TextView;
+
+import com.ldzs.recyclerlibrary.adapter.BaseViewAdapter;
+import com.ldzs.recyclerlibrary.adapter.CacheViewHolder;
+import com.ldzs.recyclerlibrary.callback.BinaryCondition;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * 分组查询微基准
+ * 滑动时每帧查询下一分组起始位置,比较二分查找nextGroupStart与逐个isGroupIndex线性查找的耗时,两者结果需一致
+ * 耗时只输出到logcat,不作断言
+ */
+public class GroupingStrategyBenchmarkTest extends InstrumentationTestCase {
+    private static final String TAG = "GroupingStrategyBenchmark";
+    private static final int ITEM_COUNT = 100000;
+    private static final int QUERY_COUNT = 20000;
+    private static final int WARM_UP_COUNT = 3;
+    private Context context;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        context = getInstrumentation().getTargetContext();
+    }
+
+    public void testNextGroupStart() {
+        Random random = new Random(1);
+        List<Integer> items = new ArrayList<>();
+        for (int group = 0; items.size() < ITEM_COUNT; group++) {
+            int size = 1 + random.nextInt(200);
+            for (int i = 0; i < size && items.size() < ITEM_COUNT; i++) {
+                items.add(group);
+            }
+        }
+        GroupingStrategy strategy = GroupingStrategy.of(new GroupAdapter(context, items)).reduce(new BinaryCondition<Integer>() {
+            @Override
+            public boolean apply(Integer t1, Integer t2) {
+                return !t1.equals(t2);
+            }
+        });
+        int[] positions = new int[QUERY_COUNT];
+        for (int i = 0; i < QUERY_COUNT; i++) {
+            positions[i] = random.nextInt(ITEM_COUNT);
+        }
+        int[] expected = new int[QUERY_COUNT];
+        int[] actual = new int[QUERY_COUNT];
+        long linearTime = 0;
+        long binaryTime = 0;
+        for (int round = 0; round <= WARM_UP_COUNT; round++) {
+            long start = System.nanoTime();
+            for (int i = 0; i < QUERY_COUNT; i++) {
+                expected[i] = linearNextGroupStart(strategy, positions[i]);
+            }
+            linearTime = System.nanoTime() - start;
+            start = System.nanoTime();
+            for (int i = 0; i < QUERY_COUNT; i++) {
+                actual[i] = strategy.nextGroupStart(positions[i]);
+            }
+            binaryTime = System.nanoTime() - start;
+        }
+        for (int i = 0; i < QUERY_COUNT; i++) {
+            assertEquals(expected[i], actual[i]);
+        }
+        Log.i(TAG, "groups:" + strategy.getGroupCount() + " items:" + ITEM_COUNT
+                + " nextGroupStart:" + binaryTime / QUERY_COUNT + "ns/query"
+                + " isGroupIndex scan:" + linearTime / QUERY_COUNT + "ns/query");
+    }
+
+    private static int linearNextGroupStart(GroupingStrategy strategy, int position) {
+        for (int i = position + 1; i < ITEM_COUNT; i++) {
+            if (strategy.isGroupIndex(i)) {
+                return i;
+            }
+        }
+        return RecyclerView.NO_POSITION;
+    }
+
+    private static class GroupAdapter extends BaseViewAdapter<Integer> {
+
+        GroupAdapter(Context context, List<Integer> items) {
+            super(context, items);
+        }
+
+        @Override
+        public CacheViewHolder onCreateViewHolder(ViewGroup parent, int viewType) {
+            return new CacheViewHolder(new TextView(parent.getContext()));
+        }
+
+        @Override
+        public void onBindViewHolder(CacheViewHolder holder, int position) {
+            ((TextView) holder.itemView).setText(String.valueOf(getItem(position)));
+        }
+    }
+}
@@ -47,7 +47,7 @@ public class DragRecyclerView extends RecyclerView implements CallbackItemTouch
      * @return
      */
     public int getItemPosition(int position) {
-        return position - adapter.getStartIndex(position);
+        return adapter.toChildPosition(position);
     }
 
     /**
@@ -3,6 +3,7 @@ package com.ldzs.recyclerlibrary;
 import android.content.Context;
 import android.content.res.TypedArray;
 import android.graphics.drawable.Drawable;
+import android.os.SystemClock;
 import android.support.annotation.IdRes;
 import android.support.annotation.IntDef;
 import android.support.v7.widget.GridLayoutManager;
@@ -16,12 +17,15 @@ import android.view.View;
 import android.view.ViewGroup;
 
 import com.ldzs.recyclerlibrary.adapter.SelectAdapter;
+import com.ldzs.recyclerlibrary.adapter.drag.SlotRule;
+import com.ldzs.recyclerlibrary.callback.DynamicItemBinder;
 import com.ldzs.recyclerlibrary.callback.OnItemClickListener;
+import com.ldzs.recyclerlibrary.callback.SlotBinder;
 import com.ldzs.recyclerlibrary.divide.SimpleItemDecoration;
 import com.ldzs.recyclerlibrary.footer.RefreshFrameFooter;
 import com.ldzs.recyclerlibrary.observe.DynamicAdapterDataObserve;
+import com.ldzs.recyclerlibrary.select.IntervalSet;
 
-import java.util.ArrayList;
 import java.util.List;
 
 import cz.library.PullToRefreshLayout;
@@ -46,11 +50,13 @@ import cz.library.RefreshMode;
  * 待优化/注意事件:
  *  1:当使用addDynamicView功能时,设置OnItemClickListener事件返回的position为插入的顺移的位置,
  *  比如1,9插入两个元素,当点击子元素为10位置元素时,将返回12,这时候如果想获取子条目位置,可以使用#getItemPosition方法.
- *  具体原因为,1 9 位置各插入一个条目,此时,点击第10个位置条目,真实子Adapter条目位置为8,取得8,但很难根据8还原为10.还原方式为while(0->8) !isDynamicItem()++ 效率很低.
- *  故此.只传回子类,也使用原始Position,使用时,调用DragRecyclerView的getItemPosition方法获取具体子条目位置
+ *  具体原因为,1 9 位置各插入一个条目,此时,点击第10个位置条目,真实子Adapter条目位置为8.
+ *  现DynamicAdapter内维护了动态条目位置索引,toChildPosition/toGlobalPosition双向转换均为O(log n),
+ *  可使用#getItemPosition获取子条目位置,#getGlobalPosition由子条目位置还原为全局位置
  *
- *  2:addDynamicView此方法,有一个问题,暂时未找到原因:如果谁清楚,请帮助解决一下,所以不用notifyItemInserted改用notifyDataSetChanged,性能差一点,但不会报错.
+ *  2:addDynamicView之前使用notifyDataSetChanged,因为同一个view被作为多个ViewHolder的itemView,notifyItemInserted时会报错:
  // java.lang.IllegalArgumentException: Called removeDetachedView withBinary a view which is not flagged as tmp detached.ViewHolder{3c6be8ee position=17 id=-1, oldPos=-1, pLpos:-1}
+ *  现每个ViewHolder持有自己的容器,绑定时再放入动态view,见DynamicViewHolder,插入/移除均为精确通知.
  *
  *
  * 以上.2016/9/24
@@ -65,6 +71,8 @@ public class PullToRefreshRecyclerView extends PullToRefreshLayout<RecyclerView>
     public static final int MULTI_SELECT =0x02;
     public static final int RECTANGLE_SELECT =0x03;
     private static final String TAG = "PullToRefreshRecyclerView";
+    private static final long PREFETCH_CHECK_INTERVAL=32;//滑动中预加载检测最小间隔
+    private static final long VELOCITY_TIMEOUT=100;//超过此间隔无滑动,速度归零
 
 
     @IntDef(value={CLICK, SINGLE_SELECT, MULTI_SELECT, RECTANGLE_SELECT})
@@ -77,6 +85,13 @@ public class PullToRefreshRecyclerView extends PullToRefreshLayout<RecyclerView>
     private OnPullFooterToRefreshListener listener;
     private DynamicAdapterDataObserve dataObserve=null;
     private int refreshState;
+    private int[] spanPositions;//StaggeredGridLayoutManager位置查找复用
+    private int prefetchItemCount;//距末尾条目数内预加载
+    private int prefetchDistance;//距末尾像素内预加载
+    private long prefetchLeadTime;//预计加载耗时,按滑动速度放大预加载像素距离
+    private float scrollVelocity;//滑向末尾速度,px/ms
+    private long lastScrollTime;
+    private long lastPrefetchCheckTime;
 
     public PullToRefreshRecyclerView(Context context) {
         this(context,null,0);
@@ -93,7 +108,6 @@ public class PullToRefreshRecyclerView extends PullToRefreshLayout<RecyclerView>
         super(context, attrs, defStyleAttr);
         refreshState = END_NORMAL;
         adapter = new SelectAdapter(null);
-        adapter.setHasStableIds(true);
         itemDecoration=new SimpleItemDecoration();
         refreshFooter = new RefreshFrameFooter(context, this);
         initFooterViewByMode(getRefreshMode());
@@ -178,7 +192,14 @@ public class PullToRefreshRecyclerView extends PullToRefreshLayout<RecyclerView>
             @Override
             public void onScrolled(RecyclerView recyclerView, int dx, int dy) {
                 super.onScrolled(recyclerView, dx, dy);
-                scrollStateChanged(RecyclerView.SCROLL_STATE_IDLE);
+                if(!isPrefetchEnabled()){
+                    scrollStateChanged(RecyclerView.SCROLL_STATE_IDLE);
+                } else if(0!=dx||0!=dy){
+                    listScrolled(dx,dy);
+                } else if(RecyclerView.SCROLL_STATE_IDLE==recyclerView.getScrollState()){
+                    //布局后回调onScrolled(0,0),不满一屏或停在预加载范围内时,新数据到达后也检测加载
+                    scrollStateChanged(RecyclerView.SCROLL_STATE_IDLE);
+                }
             }
 
             @Override
@@ -296,6 +317,31 @@ public class PullToRefreshRecyclerView extends PullToRefreshLayout<RecyclerView>
         }
     }
 
+    /**
+     * 以数据方式添加动态条目,同一binder条目共用viewType,可回收复用
+     * @param binder
+     * @param item
+     * @param position
+     */
+    public <E> void addDynamicItem(DynamicItemBinder<?,E> binder,E item,int position){
+        if(null!=binder){
+            adapter.addDynamicItem(binder,item,position);
+        }
+    }
+
+    public void removeDynamicItem(int position){
+        adapter.removeDynamicView(position);
+    }
+
+    /**
+     * 设置规则插入条目,如每8个条目插入一个广告位
+     * @param rule
+     * @param binder
+     */
+    public void setSlotRule(SlotRule rule,SlotBinder binder){
+        adapter.setSlotRule(rule,binder);
+    }
+
     public void itemRangeGlobalRemoved(int positionStart,int itemCount){
         adapter.itemRangeGlobalRemoved(positionStart, itemCount);
     }
@@ -328,14 +374,14 @@ public class PullToRefreshRecyclerView extends PullToRefreshLayout<RecyclerView>
 
     public void setAdapter(RecyclerView.Adapter adapter){
         RecyclerView.Adapter originalAdapter = this.adapter.getAdapter();
-        if(null!=originalAdapter){
-            if(null!=dataObserve){
-                originalAdapter.unregisterAdapterDataObserver(dataObserve);
-            }
-        } else {
-            this.targetView.setAdapter(this.adapter);
+        if(null!=originalAdapter&&null!=dataObserve){
+            originalAdapter.unregisterAdapterDataObserver(dataObserve);
         }
+        //先设置子Adapter,使稳定id在绑定RecyclerView之前跟随子Adapter
         this.adapter.setAdapter(adapter);
+        if(null==originalAdapter){
+            this.targetView.setAdapter(this.adapter);
+        }
         if(null!=adapter){
             adapter.registerAdapterDataObserver(dataObserve=new DynamicAdapterDataObserve(this.adapter));
         }
@@ -397,6 +443,21 @@ public class PullToRefreshRecyclerView extends PullToRefreshLayout<RecyclerView>
         }
     }
 
+    /**
+     * 直接跳转到指定位置并置顶,不经过中间条目,支持Linear/Grid/StaggeredGrid
+     * @param position 全局位置
+     */
+    public void jumpToPosition(int position){
+        RecyclerView.LayoutManager layoutManager = targetView.getLayoutManager();
+        targetView.stopScroll();
+        if(layoutManager instanceof LinearLayoutManager){
+            ((LinearLayoutManager) layoutManager).scrollToPositionWithOffset(position,0);
+        } else if(layoutManager instanceof StaggeredGridLayoutManager){
+            ((StaggeredGridLayoutManager) layoutManager).scrollToPositionWithOffset(position,0);
+        } else if(null!=layoutManager){
+            targetView.scrollToPosition(position);
+        }
+    }
 
     private void initFooterViewByMode(RefreshMode mode) {
         if(null==adapter) return;
@@ -456,8 +517,83 @@ public class PullToRefreshRecyclerView extends PullToRefreshLayout<RecyclerView>
      * @return
      */
     public int getItemPosition(int position) {
-        return position - adapter.getStartIndex(position);
+        return adapter.toChildPosition(position);
     }
+
+    /**
+     * 由子条目位置获得全局位置,用于滚动到指定子条目等
+     *
+     * @param itemPosition
+     * @return
+     */
+    public int getGlobalPosition(int itemPosition) {
+        return adapter.toGlobalPosition(itemPosition);
+    }
+    /**
+     * 设置预加载距离,滑动中距离末尾条目数或像素任一满足时回调加载更多,不必等到加载尾可见
+     * 均为0时为默认行为,停止滑动且最后条目可见时加载
+     * @param itemCount 距离末尾条目数
+     * @param distance 距离末尾像素
+     */
+    public void setLoadMorePrefetch(int itemCount,int distance){
+        this.prefetchItemCount=Math.max(0,itemCount);
+        this.prefetchDistance=Math.max(0,distance);
+    }
+
+    /**
+     * 设置预计加载耗时,快速滑动时预加载像素距离加上速度*耗时,使下一页在滑到末尾前加载完成
+     * @param millis
+     */
+    public void setLoadMoreLeadTime(long millis){
+        this.prefetchLeadTime=Math.max(0,millis);
+    }
+
+    private boolean isPrefetchEnabled(){
+        return 0<prefetchItemCount||0<prefetchDistance;
+    }
+
+    /**
+     * 滑动中记录滑向末尾速度,并按间隔检测是否需要预加载
+     */
+    private void listScrolled(int dx,int dy){
+        RecyclerView.LayoutManager layoutManager = targetView.getLayoutManager();
+        if(null==layoutManager) return;
+        long time = SystemClock.uptimeMillis();
+        int delta = layoutManager.canScrollVertically()?dy:dx;
+        long elapsed = time - lastScrollTime;
+        if(0<elapsed&&elapsed<VELOCITY_TIMEOUT){
+            scrollVelocity=(scrollVelocity+delta*1f/elapsed)/2;
+        } else if(0!=elapsed){
+            //超时后重新计算,同一毫秒内多次回调时保留之前速度
+            scrollVelocity=0;
+        }
+        lastScrollTime=time;
+        if(0<delta&&PREFETCH_CHECK_INTERVAL<=time-lastPrefetchCheckTime){
+            lastPrefetchCheckTime=time;
+            prefetchLoadMore();
+        }
+    }
+
+    /**
+     * 距离末尾条目数/像素在预加载范围内时,回调加载更多
+     */
+    private void prefetchLoadMore(){
+        if(null==listener||END_NORMAL!=refreshState||!getRefreshMode().enableFooter()||refreshFooter.isRefreshDone()) return;
+        RecyclerView.LayoutManager layoutManager = targetView.getLayoutManager();
+        int remainItemCount = layoutManager.getItemCount() - getFooterViewCount() - 1 - getLastVisiblePosition();
+        int remainDistance;
+        if(layoutManager.canScrollVertically()){
+            remainDistance=targetView.computeVerticalScrollRange()-targetView.computeVerticalScrollOffset()-targetView.computeVerticalScrollExtent();
+        } else {
+            remainDistance=targetView.computeHorizontalScrollRange()-targetView.computeHorizontalScrollOffset()-targetView.computeHorizontalScrollExtent();
+        }
+        int distance = prefetchDistance + Math.round(Math.max(0f, scrollVelocity) * prefetchLeadTime);
+        if((0<prefetchItemCount&&remainItemCount<=prefetchItemCount)||(0<distance&&remainDistance<=distance)){
+            refreshState = END_REFRESHING;
+            listener.onRefresh();
+        }
+    }
+
     /**
      * on recyclerView scroll state changed
      * @param state
@@ -478,6 +614,10 @@ public class PullToRefreshRecyclerView extends PullToRefreshLayout<RecyclerView>
                 //大于一屏,回调加载更多
                 refreshState = END_REFRESHING;
                 listener.onRefresh();
+            } else if(isPrefetchEnabled()){
+                //停在预加载范围内
+                scrollVelocity=0;
+                prefetchLoadMore();
             }
         }
     }
@@ -492,10 +632,10 @@ public class PullToRefreshRecyclerView extends PullToRefreshLayout<RecyclerView>
         if (layoutManager instanceof GridLayoutManager) {
             lastVisibleItemPosition = ((GridLayoutManager) layoutManager).findLastVisibleItemPosition();
         } else if (layoutManager instanceof StaggeredGridLayoutManager) {
-            int[] spanCount = new int[((StaggeredGridLayoutManager) layoutManager).getSpanCount()];
-            ((StaggeredGridLayoutManager) layoutManager).findLastVisibleItemPositions(spanCount);
-            lastVisibleItemPosition = spanCount[0];
-            for (int value : spanCount) {
+            int[] spanPositions = obtainSpanPositions((StaggeredGridLayoutManager) layoutManager);
+            ((StaggeredGridLayoutManager) layoutManager).findLastVisibleItemPositions(spanPositions);
+            lastVisibleItemPosition = spanPositions[0];
+            for (int value : spanPositions) {
                 if (value > lastVisibleItemPosition) {
                     lastVisibleItemPosition = value;
                 }
@@ -506,6 +646,19 @@ public class PullToRefreshRecyclerView extends PullToRefreshLayout<RecyclerView>
         return lastVisibleItemPosition;
     }
 
+    /**
+     * 复用列位置数组,避免滑动时每次分配
+     * @param layoutManager
+     * @return
+     */
+    private int[] obtainSpanPositions(StaggeredGridLayoutManager layoutManager){
+        int spanCount = layoutManager.getSpanCount();
+        if(null==spanPositions||spanPositions.length!=spanCount){
+            spanPositions=new int[spanCount];
+        }
+        return spanPositions;
+    }
+
     /**
      * get first visible position
      * @return last visible position
@@ -516,11 +669,12 @@ public class PullToRefreshRecyclerView extends PullToRefreshLayout<RecyclerView>
         if (layoutManager instanceof GridLayoutManager) {
             lastVisibleItemPosition = ((GridLayoutManager) layoutManager).findFirstVisibleItemPosition();
         } else if (layoutManager instanceof StaggeredGridLayoutManager) {
-            int[] spanCount = new int[((StaggeredGridLayoutManager) layoutManager).getSpanCount()];
-            ((StaggeredGridLayoutManager) layoutManager).findFirstVisibleItemPositions(spanCount);
-            lastVisibleItemPosition = spanCount[0];
-            for (int value : spanCount) {
-                if (value > lastVisibleItemPosition) {
+            int[] spanPositions = obtainSpanPositions((StaggeredGridLayoutManager) layoutManager);
+            ((StaggeredGridLayoutManager) layoutManager).findFirstVisibleItemPositions(spanPositions);
+            //第一个可见位置取各列最小值,空列为NO_POSITION
+            lastVisibleItemPosition = RecyclerView.NO_POSITION;
+            for (int value : spanPositions) {
+                if (RecyclerView.NO_POSITION != value && (RecyclerView.NO_POSITION == lastVisibleItemPosition || value < lastVisibleItemPosition)) {
                     lastVisibleItemPosition = value;
                 }
             }
@@ -587,6 +741,52 @@ public class PullToRefreshRecyclerView extends PullToRefreshLayout<RecyclerView>
         return this.adapter.getMultiSelectItems();
     }
 
+    /**
+     * 按稳定id设置多选集,数据增删后选中状态不变
+     * @param ids
+     */
+    public void setSelectedIds(long[] ids){
+        this.adapter.setSelectedIds(ids);
+    }
+
+    public long[] getSelectedIds(){
+        return this.adapter.getSelectedIds();
+    }
+
+    public boolean isItemSelected(int position){
+        return this.adapter.isItemSelected(position);
+    }
+
+    /**
+     * 全选,只在多选/块选择时有效,多选时不超过最大选择个数
+     * 块选择/无稳定id多选时只保存为一个区间
+     */
+    public void selectAll(){
+        this.adapter.selectAll();
+    }
+
+    /**
+     * 反选,只在多选/块选择时有效,多选时反选后超过最大选择个数则不反选
+     */
+    public void invertSelection(){
+        this.adapter.invertSelection();
+    }
+
+    /**
+     * 范围[start,end]并入选中集,只在多选/块选择时有效,多选时不超过最大选择个数
+     */
+    public void selectRange(int start,int end){
+        this.adapter.selectRange(start,end);
+    }
+
+    public void clearSelection(){
+        this.adapter.clearSelection();
+    }
+
+    public IntervalSet getSelectedRanges(){
+        return this.adapter.getSelectedRanges();
+    }
+
 
     public Range<Integer> getRectangleSelectPosition(){
         return this.adapter.getRectangleSelectPosition();
@@ -610,6 +810,15 @@ public class PullToRefreshRecyclerView extends PullToRefreshLayout<RecyclerView>
         adapter.setOnRectangleSelectListener(rectangleSelectListener);
     }
 
+    /*
+    * 设置区间选择监听
+    *
+    * @param rangeSelectListener
+    */
+    public void setOnRangeSelectListener(OnRangeSelectListener rangeSelectListener) {
+        adapter.setOnRangeSelectListener(rangeSelectListener);
+    }
+
     /**
      * set bottom refresh listener
      */
@@ -624,14 +833,25 @@ public class PullToRefreshRecyclerView extends PullToRefreshLayout<RecyclerView>
         void onSingleSelect(View v, int newPosition, int oldPosition);
     }
 
+    /**
+     * 多选监听,selectPositions为选中位置只读视图,随选中集变化,需保存时复制
+     * 全选/反选/范围选择等批量选择时v为列表
+     */
     public interface OnMultiSelectListener{
-        void onMultiSelect(View v, ArrayList<Integer> selectPositions,int lastSelectCount,int maxCount);
+        void onMultiSelect(View v, List<Integer> selectPositions,int lastSelectCount,int maxCount);
     }
 
     public interface OnRectangleSelectListener{
         void onRectangleSelect(int startPosition, int endPosition);
     }
 
+    /**
+     * 区间选中集变化监听,不逐个展开位置,selectRanges为选中集副本,修改不影响选中状态
+     */
+    public interface OnRangeSelectListener{
+        void onRangeSelect(IntervalSet selectRanges);
+    }
+
     @Override
     protected ViewGroup.LayoutParams generateDefaultLayoutParams() {
         return new PullToRefreshRecyclerView.LayoutParams(LayoutParams.MATCH_PARENT,LayoutParams.MATCH_PARENT);
@@ -2,14 +2,20 @@ package com.ldzs.recyclerlibrary;
 
 import android.content.Context;
 import android.content.res.TypedArray;
+import android.graphics.Rect;
+import android.os.Looper;
+import android.os.MessageQueue;
 import android.support.v7.widget.GridLayoutManager;
 import android.support.v7.widget.RecyclerView;
 import android.util.AttributeSet;
 import android.view.LayoutInflater;
+import android.view.MotionEvent;
 import android.view.View;
 import android.view.ViewGroup;
 
+import com.ldzs.recyclerlibrary.callback.SectionCallback;
 import com.ldzs.recyclerlibrary.callback.StickyCallback;
+import com.ldzs.recyclerlibrary.divide.StickyItemDecoration;
 import com.ldzs.recyclerlibrary.strategy.GroupingStrategy;
 
 /**
@@ -21,6 +27,10 @@ import com.ldzs.recyclerlibrary.strategy.GroupingStrategy;
  * 3:支持布局/xml内直接写StickyView
  * 4:配合GroupingStrategy 最大化减少分组逻辑
  * {@link com.ldzs.recyclerlibrary.strategy.GroupingStrategy}
+ * 5:以资源id设置StickyView时,缓存当前/上一个/下一个分组的StickyView,越过分组时只切换显示,
+ * 相邻分组在主线程空闲时提前绑定,滑动中不再重复绑定/布局
+ * 6:setStickyDrawMode(true)时,StickyView不加入布局,由StickyItemDecoration绘制缓存位图,仍支持点击
+ * 7:分组索引快速跳转,见SectionIndexView
  *
  * 使用:
  * 数据适配器继承BaseViewAdapter 且实现StickyCallback接口
@@ -38,6 +48,13 @@ public class PullToRefreshStickyRecyclerView extends PullToRefreshRecyclerView
     private AdapterDataObserver observer;
     private StickyScrollListener listener;
     private View stickyView;
+    private int stickyLayoutId;
+    private final StickyViewCache stickyViewCache;
+    private boolean stickyDrawMode;
+    private StickyItemDecoration stickyDecoration;
+    private StickyTouchListener stickyTouchListener;
+    private GroupingStrategy groupingStrategy;
+    private boolean stickyRefreshPosted;
 
     public PullToRefreshStickyRecyclerView(Context context) {
         this(context,null);
@@ -50,6 +67,8 @@ public class PullToRefreshStickyRecyclerView extends PullToRefreshRecyclerView
     public PullToRefreshStickyRecyclerView(Context context, AttributeSet attrs, int defStyleAttr) {
         super(context, attrs, defStyleAttr);
         this.layoutInflater=LayoutInflater.from(context);
+        this.stickyViewCache=new StickyViewCache();
+        this.stickyLayoutId=NO_ID;
         TypedArray a = context.obtainStyledAttributes(attrs, R.styleable.PullToRefreshStickyRecyclerView);
         setStickyView(a.getResourceId(R.styleable.PullToRefreshStickyRecyclerView_pv_stickyView,NO_ID));
         a.recycle();
@@ -74,6 +93,7 @@ public class PullToRefreshStickyRecyclerView extends PullToRefreshRecyclerView
                     PullToRefreshStickyRecyclerView.LayoutParams stickyLayoutParams= (LayoutParams) layoutParams;
                     if(stickyLayoutParams.layoutStickyView){
                         stickyView=childView;
+                        stickyViewCache.reset();
                         removeView(childView);
                         break;
                     }
@@ -85,16 +105,77 @@ public class PullToRefreshStickyRecyclerView extends PullToRefreshRecyclerView
     public void setStickyView(int resourceId) {
         if(NO_ID!=resourceId){
             setStickyView(layoutInflater.inflate(resourceId,this,false));
+            //可由资源创建多个StickyView缓存
+            stickyLayoutId=resourceId;
         }
     }
 
 
     public void setStickyView(View view){
         if(null!=this.stickyView){
-            removeView(this.stickyView);
+            stickyViewCache.removeViews();
         }
         //不添加,等待setAdapter时添加,避免出现无数据显示一个空的头情况
         this.stickyView=view;
+        this.stickyLayoutId=NO_ID;
+        stickyViewCache.reset();
+    }
+
+    /**
+     * 设置只绘制模式,StickyView不加入布局,以ItemDecoration绘制,需在setAdapter之前设置
+     * @param drawMode
+     */
+    public void setStickyDrawMode(boolean drawMode){
+        this.stickyDrawMode=drawMode;
+    }
+
+    /**
+     * 分组索引个数
+     * @return
+     */
+    public int getSectionCount(){
+        StickyCallback callback = getStickyCallback();
+        return null==callback?0:callback.getGroupingStrategy().getGroupCount();
+    }
+
+    /**
+     * 分组索引文字,数据适配器未实现SectionCallback时,以序号显示
+     * @param section
+     * @return
+     */
+    public CharSequence getSectionLabel(int section){
+        CharSequence label=null;
+        StickyCallback callback = getStickyCallback();
+        if(callback instanceof SectionCallback){
+            label=((SectionCallback) callback).getSectionLabel(callback.getGroupingStrategy().getOriginalIndex(section));
+        }
+        return null==label?String.valueOf(section+1):label;
+    }
+
+    /**
+     * 子条目位置所在分组索引,O(log n)
+     * @param position 子条目位置
+     * @return
+     */
+    public int getSectionForPosition(int position){
+        StickyCallback callback = getStickyCallback();
+        return null==callback?RecyclerView.NO_POSITION:callback.getGroupingStrategy().groupOrdinal(position);
+    }
+
+    /**
+     * 跳转到分组起始位置,包含头/动态条目偏移
+     * @param section
+     */
+    public void scrollToSection(int section){
+        StickyCallback callback = getStickyCallback();
+        if(null!=callback&&0<=section&&section<callback.getGroupingStrategy().getGroupCount()){
+            jumpToPosition(getGlobalPosition(callback.getGroupingStrategy().getOriginalIndex(section)));
+        }
+    }
+
+    private StickyCallback getStickyCallback(){
+        RecyclerView.Adapter adapter = getAdapter();
+        return adapter instanceof StickyCallback?(StickyCallback) adapter:null;
     }
 
     public int getItemCount(){
@@ -109,9 +190,7 @@ public class PullToRefreshStickyRecyclerView extends PullToRefreshRecyclerView
     @Override
     protected void onLayout(boolean b, int left, int top, int right, int bottom) {
         super.onLayout(b, left, top, right, bottom);
-        if(null!=stickyView){
-            stickyView.layout(left,0,right,stickyView.getMeasuredHeight());
-        }
+        stickyViewCache.layout(left,right);
     }
 
     @Override
@@ -120,18 +199,40 @@ public class PullToRefreshStickyRecyclerView extends PullToRefreshRecyclerView
         if(!(adapter instanceof StickyCallback)){
             throw new IllegalArgumentException("RecyclerView.Adapter must be implements StickyCallback!");
         } else if(null!=stickyView){
-            removeView(stickyView);
-            addView(stickyView);
+            stickyViewCache.removeViews();
             RecyclerView refreshView = getRefreshView();
             refreshView.removeOnScrollListener(listener);
-            listener=new StickyScrollListener((StickyCallback) adapter);
-            refreshView.addOnScrollListener(listener);
+            if(null!=stickyDecoration){
+                refreshView.removeItemDecoration(stickyDecoration);
+                refreshView.removeOnItemTouchListener(stickyTouchListener);
+                stickyDecoration=null;
+            }
+            if(stickyDrawMode){
+                stickyDecoration=new StickyItemDecoration(stickyView,(StickyCallback) adapter);
+                refreshView.addItemDecoration(stickyDecoration);
+                if(null==stickyTouchListener){
+                    stickyTouchListener=new StickyTouchListener();
+                }
+                refreshView.addOnItemTouchListener(stickyTouchListener);
+            } else {
+                stickyViewCache.reset();
+                stickyViewCache.setCallback((StickyCallback) adapter);
+                addView(stickyView);
+                listener=new StickyScrollListener((StickyCallback) adapter);
+                refreshView.addOnScrollListener(listener);
+            }
             if(null==observer){
-                observer=new AdapterDataObserver((StickyCallback) adapter);
+                observer=new AdapterDataObserver();
             } else {
                 adapter.unregisterAdapterDataObserver(observer);
             }
             adapter.registerAdapterDataObserver(observer);
+            //异步计算完成时没有数据通知,由分组回调刷新
+            if(null!=groupingStrategy){
+                groupingStrategy.removeOnGroupChangedListener(observer);
+            }
+            groupingStrategy=((StickyCallback) adapter).getGroupingStrategy();
+            groupingStrategy.addOnGroupChangedListener(observer);
         }
     }
 
@@ -150,92 +251,342 @@ public class PullToRefreshStickyRecyclerView extends PullToRefreshRecyclerView
         }
     }
 
-    class AdapterDataObserver extends RecyclerView.AdapterDataObserver{
-        private final StickyCallback callback;
+    /**
+     * 数据任一变化后,分组内容或序号可能变化,缓存的StickyView/位图全部失效,并重新绑定显示头,否则会出现头与数据列不一致情况
+     * 本监听可能先于分组策略收到通知,此时分组尚未更新,重新绑定延迟到本次通知完成后
+     */
+    class AdapterDataObserver extends RecyclerView.AdapterDataObserver implements GroupingStrategy.OnGroupChangedListener{
 
-        public AdapterDataObserver(StickyCallback callback) {
-            this.callback = callback;
+        @Override
+        public void onItemRangeChanged(int positionStart, int itemCount) {
+            super.onItemRangeChanged(positionStart, itemCount);
+            invalidateSticky();
         }
 
+        @Override
+        public void onItemRangeInserted(int positionStart, int itemCount) {
+            super.onItemRangeInserted(positionStart, itemCount);
+            invalidateSticky();
+        }
+
+        @Override
+        public void onItemRangeRemoved(int positionStart, int itemCount) {
+            super.onItemRangeRemoved(positionStart, itemCount);
+            invalidateSticky();
+        }
+
+        @Override
+        public void onItemRangeMoved(int fromPosition, int toPosition, int itemCount) {
+            super.onItemRangeMoved(fromPosition, toPosition, itemCount);
+            invalidateSticky();
+        }
 
         @Override
         public void onChanged() {
             super.onChanged();
-            //此处,当数据完全更新后,滑动到顶部,并更新显示头,否则会出现头与数据列不一致情况
-            int firstVisiblePosition = getFirstVisiblePosition()-getHeaderViewCount();
-            GroupingStrategy groupingStrategy = callback.getGroupingStrategy();
-            int itemCount = getItemCount();
-            int startIndex = groupingStrategy.getGroupStartIndex(firstVisiblePosition);
-            if(startIndex<itemCount){
-                callback.initStickyView(stickyView, startIndex);
+            invalidateSticky();
+        }
+
+        @Override
+        public void onGroupChanged(GroupingStrategy strategy) {
+            invalidateSticky();
+        }
+
+        /**
+         * 绘制模式下只使位图失效,绘制时分组己更新;否则使缓存失效,并在主线程重新绑定当前显示头
+         */
+        private void invalidateSticky(){
+            if(null!=stickyDecoration){
+                stickyDecoration.invalidate();
+                getRefreshView().invalidate();
+            } else {
+                stickyViewCache.invalidate();
+                if(!stickyRefreshPosted){
+                    stickyRefreshPosted=true;
+                    post(stickyRefreshRunnable);
+                }
             }
         }
     }
 
+    private final Runnable stickyRefreshRunnable=new Runnable() {
+        @Override
+        public void run() {
+            stickyRefreshPosted=false;
+            if(null!=listener){
+                listener.updateStickyView();
+            }
+        }
+    };
+
     class StickyScrollListener extends RecyclerView.OnScrollListener{
-        private final StickyCallback callback;
         private final GroupingStrategy groupingStrategy;
-        private int lastVisibleItemPosition;
 
         public StickyScrollListener(StickyCallback callback) {
-            this.callback = callback;
             this.groupingStrategy=callback.getGroupingStrategy();
             //初始化第一个节点信息,若数据罗多,延持到滑动时,会导致初始化第一个失败
             int itemCount = getItemCount();
             if(0<itemCount){
-                this.callback.initStickyView(stickyView,0);
+                stickyViewCache.show(0);
             }
-            this.lastVisibleItemPosition=RecyclerView.NO_POSITION;
         }
 
         @Override
         public void onScrolled(RecyclerView recyclerView, int dx, int dy) {
             super.onScrolled(recyclerView, dx, dy);
+            updateStickyView();
+        }
+
+        /**
+         * 按第一个可见条目显示所在分组StickyView,并在下一分组顶到时上移
+         */
+        void updateStickyView(){
             RecyclerView.LayoutManager layoutManager = getLayoutManager();
-            int spanCount=1;
-            if(layoutManager instanceof GridLayoutManager){
-                spanCount=((GridLayoutManager)layoutManager).getSpanCount();
-            }
             int headerViewCount = getHeaderViewCount();
             int firstVisibleItemPosition = getFirstVisiblePosition();
-            if(firstVisibleItemPosition<headerViewCount){
-                stickyView.setVisibility(View.GONE);
-            } else {
-                stickyView.setVisibility(View.VISIBLE);
-                int realVisibleItemPosition=firstVisibleItemPosition-headerViewCount;
-                //初始化当前位置Sticky信息
-                int lastRealPosition=realVisibleItemPosition+spanCount;
-                for(int position=realVisibleItemPosition;position<=lastRealPosition;position++) {
-                    if (lastVisibleItemPosition != firstVisibleItemPosition && groupingStrategy.isGroupIndex(position)) {
-                        lastVisibleItemPosition = firstVisibleItemPosition;
-                        int startIndex = groupingStrategy.getGroupStartIndex(realVisibleItemPosition);
-                        if(startIndex<layoutManager.getItemCount()){
-                            callback.initStickyView(stickyView, startIndex);
-                        }
-                        break;
-                    }
+            //与下一分组起始位置的getGlobalPosition对应,以Adapter自身映射换算,跳过动态/规则条目
+            int realVisibleItemPosition=RecyclerView.NO_POSITION;
+            if(headerViewCount<=firstVisibleItemPosition&&0<getItemCount()){
+                int lastVisibleItemPosition=getLastVisiblePosition();
+                for(int position=firstVisibleItemPosition;position<=lastVisibleItemPosition&&RecyclerView.NO_POSITION==realVisibleItemPosition;position++){
+                    realVisibleItemPosition=getItemPosition(position);
                 }
+            }
+            if(RecyclerView.NO_POSITION==realVisibleItemPosition){
+                stickyViewCache.setVisible(false);
+            } else {
+                //当前分组StickyView,己缓存时只切换显示
+                View stickyView = stickyViewCache.show(Math.max(0,groupingStrategy.groupOrdinal(realVisibleItemPosition)));
                 stickyView.setTranslationY(0);
-                //在这个范围内,找到本页内可能出现的下一个阶段的条目位置.
-                int stickyPosition = findStickyPosition(realVisibleItemPosition+1, getLastVisiblePosition());
+                //下一分组起始条目,O(log n),未布局时findViewByPosition返回null
+                int stickyPosition = groupingStrategy.nextGroupStart(realVisibleItemPosition);
                 if(RecyclerView.NO_POSITION!=stickyPosition){
-                    View nextAdapterView = layoutManager.findViewByPosition(stickyPosition+headerViewCount);
+                    View nextAdapterView = layoutManager.findViewByPosition(getGlobalPosition(stickyPosition));
                     if (null!=nextAdapterView&&nextAdapterView.getTop() < stickyView.getHeight()) {
                         stickyView.setTranslationY(nextAdapterView.getTop()-stickyView.getHeight());
                     }
                 }
             }
         }
+    }
+
+    /**
+     * 绘制模式下StickyView点击处理,按下位置在StickyView绘制区域内时拦截,抬起时分发给区域内可点击view
+     */
+    class StickyTouchListener implements RecyclerView.OnItemTouchListener{
+        private boolean touchSticky;
+
+        @Override
+        public boolean onInterceptTouchEvent(RecyclerView rv, MotionEvent e) {
+            if(MotionEvent.ACTION_DOWN==e.getActionMasked()){
+                touchSticky=null!=stickyDecoration&&stickyDecoration.isStickyHit(e.getX(),e.getY());
+            }
+            return touchSticky;
+        }
+
+        @Override
+        public void onTouchEvent(RecyclerView rv, MotionEvent e) {
+            int action = e.getActionMasked();
+            if(MotionEvent.ACTION_UP==action&&null!=stickyDecoration&&stickyDecoration.isStickyHit(e.getX(),e.getY())){
+                Rect rect=new Rect();
+                stickyDecoration.getStickyRect(rect);
+                View view = stickyDecoration.getStickyView(rv);
+                if(null!=view){
+                    performStickyClick(view,(int)e.getX()-rect.left,(int)e.getY()-rect.top);
+                }
+            }
+            if(MotionEvent.ACTION_UP==action||MotionEvent.ACTION_CANCEL==action){
+                touchSticky=false;
+            }
+        }
+
+        /**
+         * 找到坐标下最内层可点击view并执行点击
+         */
+        private boolean performStickyClick(View view,int x,int y){
+            if(view instanceof ViewGroup){
+                ViewGroup viewGroup = (ViewGroup) view;
+                for(int i=viewGroup.getChildCount()-1;i>=0;i--){
+                    View child = viewGroup.getChildAt(i);
+                    if(View.VISIBLE==child.getVisibility()&&x>=child.getLeft()&&x<child.getRight()&&y>=child.getTop()&&y<child.getBottom()){
+                        if(performStickyClick(child,x-child.getLeft(),y-child.getTop())){
+                            return true;
+                        }
+                    }
+                }
+            }
+            return view.isClickable()&&view.performClick();
+        }
+
+        @Override
+        public void onRequestDisallowInterceptTouchEvent(boolean disallowIntercept) {
+        }
+    }
+
+    /**
+     * StickyView缓存,按分组序号缓存当前/上一个/下一个分组己绑定的StickyView
+     * 越过分组时只切换显示,相邻分组在主线程空闲时提前绑定
+     * 未以资源id设置StickyView时,无法创建更多view,退化为单个view重复绑定
+     */
+    class StickyViewCache implements MessageQueue.IdleHandler{
+        private static final int CACHE_SIZE=3;
+        private final View[] views=new View[CACHE_SIZE];
+        private final int[] ordinals=new int[CACHE_SIZE];
+        private int viewCount;
+        private int currentIndex;
+        private boolean visible;
+        private boolean idleQueued;
+        private StickyCallback callback;
+
+        void setCallback(StickyCallback callback) {
+            this.callback = callback;
+        }
+
+        /**
+         * 重置为只有stickyView一个缓存
+         */
+        void reset(){
+            viewCount=0;
+            currentIndex=0;
+            visible=true;
+            if(null!=stickyView){
+                views[viewCount++]=stickyView;
+            }
+            invalidate();
+        }
+
+        /**
+         * 数据变化后,所有缓存绑定失效
+         */
+        void invalidate(){
+            for(int i=0;i<CACHE_SIZE;i++){
+                ordinals[i]=RecyclerView.NO_POSITION;
+            }
+        }
+
+        void removeViews(){
+            for(int i=0;i<viewCount;i++){
+                removeView(views[i]);
+            }
+        }
+
+        void layout(int left,int right){
+            for(int i=0;i<viewCount;i++){
+                View view = views[i];
+                view.layout(left,0,right,view.getMeasuredHeight());
+            }
+        }
+
+        void setVisible(boolean visible){
+            this.visible=visible;
+            if(0<viewCount){
+                views[currentIndex].setVisibility(visible?View.VISIBLE:View.GONE);
+            }
+        }
+
+        /**
+         * 显示分组序号对应StickyView,未缓存时才绑定
+         * @param ordinal
+         * @return
+         */
+        View show(int ordinal){
+            int index=obtain(ordinal);
+            if(index!=currentIndex){
+                views[currentIndex].setVisibility(View.INVISIBLE);
+                currentIndex=index;
+            }
+            setVisible(true);
+            //相邻分组等待空闲时绑定
+            if(!idleQueued&&NO_ID!=stickyLayoutId){
+                idleQueued=true;
+                Looper.myQueue().addIdleHandler(this);
+            }
+            return views[currentIndex];
+        }
+
+        /**
+         * 获得绑定ordinal的缓存角标,依次选择:己绑定->空闲缓存->新建->当前显示
+         * @param ordinal
+         * @return
+         */
+        private int obtain(int ordinal){
+            int index=indexOf(ordinal);
+            if(0>index){
+                index=obtainFreeIndex(ordinal);
+                if(0>index){
+                    index=currentIndex;
+                }
+                bind(index,ordinal);
+            }
+            return index;
+        }
+
+        /**
+         * 获得可重新绑定的缓存角标,保留当前显示以及与当前/目标分组相邻的缓存,不足时新建
+         * @param ordinal
+         * @return 无可用缓存返回NO_POSITION
+         */
+        private int obtainFreeIndex(int ordinal){
+            int index=RecyclerView.NO_POSITION;
+            int currentOrdinal=ordinals[currentIndex];
+            for(int i=0;i<viewCount;i++){
+                if(i!=currentIndex&&!isNear(ordinals[i],currentOrdinal)&&!isNear(ordinals[i],ordinal)){
+                    index=i;
+                    break;
+                }
+            }
+            if(0>index&&viewCount<CACHE_SIZE&&NO_ID!=stickyLayoutId){
+                View view=layoutInflater.inflate(stickyLayoutId,PullToRefreshStickyRecyclerView.this,false);
+                view.setVisibility(View.INVISIBLE);
+                addView(view);
+                index=viewCount;
+                views[viewCount++]=view;
+            }
+            return index;
+        }
 
-        int findStickyPosition(int position,int lastVisibleItemPosition){
-            int stickyPosition=RecyclerView.NO_POSITION;
-            for(int index=position;index<=lastVisibleItemPosition;index++){
-                if(groupingStrategy.isGroupIndex(index)){
-                    stickyPosition=index;
+        private int indexOf(int ordinal){
+            int index=RecyclerView.NO_POSITION;
+            for(int i=0;i<viewCount;i++){
+                if(ordinal==ordinals[i]){
+                    index=i;
                     break;
                 }
             }
-            return stickyPosition;
+            return index;
+        }
+
+        private boolean isNear(int ordinal,int otherOrdinal){
+            return RecyclerView.NO_POSITION!=ordinal&&RecyclerView.NO_POSITION!=otherOrdinal&&1>=Math.abs(ordinal-otherOrdinal);
+        }
+
+        private void bind(int index,int ordinal){
+            ordinals[index]=ordinal;
+            callback.initStickyView(views[index],callback.getGroupingStrategy().getOriginalIndex(ordinal));
+        }
+
+        /**
+         * 主线程空闲时,预绑定当前分组的上一个/下一个分组
+         */
+        @Override
+        public boolean queueIdle() {
+            idleQueued=false;
+            int currentOrdinal=ordinals[currentIndex];
+            if(null!=callback&&RecyclerView.NO_POSITION!=currentOrdinal){
+                int groupCount=callback.getGroupingStrategy().getGroupCount();
+                prefetch(currentOrdinal+1,groupCount);
+                prefetch(currentOrdinal-1,groupCount);
+            }
+            return false;
+        }
+
+        private void prefetch(int ordinal,int groupCount){
+            if(0<=ordinal&&ordinal<groupCount&&0>indexOf(ordinal)){
+                int index=obtainFreeIndex(ordinal);
+                if(0<=index){
+                    bind(index,ordinal);
+                }
+            }
         }
     }
 }
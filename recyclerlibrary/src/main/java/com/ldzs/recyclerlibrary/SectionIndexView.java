@@ -0,0 +1,164 @@
+package com.ldzs.recyclerlibrary;
+
+import android.content.Context;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Paint;
+import android.support.v7.widget.RecyclerView;
+import android.util.AttributeSet;
+import android.util.TypedValue;
+import android.view.MotionEvent;
+import android.view.View;
+
+import com.ldzs.recyclerlibrary.strategy.GroupingStrategy;
+
+/**
+ * 分组索引快速跳转控件,如通讯录右侧字母索引
+ * 分组来自GroupingStrategy,文字来自数据适配器SectionCallback,触摸时直接跳转到分组起始位置,O(log n),
+ * 不经过中间条目,支持Linear/Grid/StaggeredGrid,并计算头/动态条目偏移
+ *
+ * 使用:
+ * sectionIndexView.setupWithRecyclerView(stickyRecyclerView);
+ * 数据变化后调用notifySectionChanged刷新
+ */
+public class SectionIndexView extends View {
+    private static final String TAG = "SectionIndexView";
+    private final Paint paint;
+    private PullToRefreshStickyRecyclerView recyclerView;
+    private CharSequence[] labels;
+    private OnSectionSelectListener listener;
+    private int selectSection;
+    private int textColor;
+    private int selectTextColor;
+
+    public SectionIndexView(Context context) {
+        this(context, null);
+    }
+
+    public SectionIndexView(Context context, AttributeSet attrs) {
+        this(context, attrs, 0);
+    }
+
+    public SectionIndexView(Context context, AttributeSet attrs, int defStyleAttr) {
+        super(context, attrs, defStyleAttr);
+        paint = new Paint(Paint.ANTI_ALIAS_FLAG);
+        paint.setTextAlign(Paint.Align.CENTER);
+        paint.setTextSize(TypedValue.applyDimension(TypedValue.COMPLEX_UNIT_SP, 12, getResources().getDisplayMetrics()));
+        labels = new CharSequence[0];
+        selectSection = RecyclerView.NO_POSITION;
+        textColor = Color.GRAY;
+        selectTextColor = Color.BLACK;
+    }
+
+    public void setupWithRecyclerView(PullToRefreshStickyRecyclerView recyclerView) {
+        this.recyclerView = recyclerView;
+        notifySectionChanged();
+    }
+
+    /**
+     * 分组变化后重新获取索引文字
+     */
+    public void notifySectionChanged() {
+        int sectionCount = null == recyclerView ? 0 : recyclerView.getSectionCount();
+        labels = new CharSequence[sectionCount];
+        for (int i = 0; i < sectionCount; i++) {
+            labels[i] = recyclerView.getSectionLabel(i);
+        }
+        selectSection = RecyclerView.NO_POSITION;
+        invalidate();
+    }
+
+    /**
+     * 与分组策略关联,分组变化(含异步计算完成)后自动刷新
+     *
+     * @param groupingStrategy
+     */
+    public void observeGroupingStrategy(GroupingStrategy groupingStrategy) {
+        groupingStrategy.addOnGroupChangedListener(new GroupingStrategy.OnGroupChangedListener() {
+            @Override
+            public void onGroupChanged(GroupingStrategy strategy) {
+                notifySectionChanged();
+            }
+        });
+    }
+
+    public void setTextSize(float textSize) {
+        paint.setTextSize(textSize);
+        invalidate();
+    }
+
+    public void setTextColor(int color) {
+        this.textColor = color;
+        invalidate();
+    }
+
+    public void setSelectTextColor(int color) {
+        this.selectTextColor = color;
+        invalidate();
+    }
+
+    public void setOnSectionSelectListener(OnSectionSelectListener listener) {
+        this.listener = listener;
+    }
+
+    @Override
+    protected void onDraw(Canvas canvas) {
+        super.onDraw(canvas);
+        int sectionCount = labels.length;
+        if (0 == sectionCount) return;
+        float itemHeight = getSectionHeight();
+        float x = getPaddingLeft() + (getWidth() - getPaddingLeft() - getPaddingRight()) / 2f;
+        Paint.FontMetrics fontMetrics = paint.getFontMetrics();
+        float baseline = (itemHeight - fontMetrics.bottom - fontMetrics.top) / 2f;
+        for (int i = 0; i < sectionCount; i++) {
+            CharSequence label = labels[i];
+            paint.setColor(i == selectSection ? selectTextColor : textColor);
+            float y = getPaddingTop() + i * itemHeight + baseline;
+            canvas.drawText(label, 0, label.length(), x, y, paint);
+        }
+    }
+
+    private float getSectionHeight() {
+        return (getHeight() - getPaddingTop() - getPaddingBottom()) * 1f / Math.max(1, labels.length);
+    }
+
+    @Override
+    public boolean onTouchEvent(MotionEvent event) {
+        int action = event.getActionMasked();
+        if (0 == labels.length) return super.onTouchEvent(event);
+        switch (action) {
+            case MotionEvent.ACTION_DOWN:
+            case MotionEvent.ACTION_MOVE:
+                int section = (int) ((event.getY() - getPaddingTop()) / getSectionHeight());
+                section = Math.max(0, Math.min(labels.length - 1, section));
+                if (section != selectSection) {
+                    selectSection = section;
+                    if (null != recyclerView) {
+                        recyclerView.scrollToSection(section);
+                    }
+                    if (null != listener) {
+                        listener.onSectionSelected(section, labels[section]);
+                    }
+                    invalidate();
+                }
+                break;
+            case MotionEvent.ACTION_UP:
+            case MotionEvent.ACTION_CANCEL:
+                selectSection = RecyclerView.NO_POSITION;
+                if (null != listener) {
+                    listener.onSectionSelected(RecyclerView.NO_POSITION, null);
+                }
+                invalidate();
+                break;
+        }
+        return true;
+    }
+
+    public interface OnSectionSelectListener {
+        /**
+         * @param section 分组索引,手指抬起时为NO_POSITION
+         * @param label
+         */
+        void onSectionSelected(int section, CharSequence label);
+    }
+}
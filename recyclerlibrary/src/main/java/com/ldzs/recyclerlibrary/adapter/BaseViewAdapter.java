@@ -1,15 +1,19 @@
 package com.ldzs.recyclerlibrary.adapter;
 
 import android.content.Context;
+import android.support.v7.util.ListUpdateCallback;
 import android.support.v7.widget.RecyclerView;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
 
 import com.ldzs.recyclerlibrary.IRecyclerAdapter;
+import com.ldzs.recyclerlibrary.callback.ItemDiffCallback;
+import com.ldzs.recyclerlibrary.callback.ItemKeyProvider;
 
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
 
 /**
@@ -19,6 +23,9 @@ import java.util.List;
 public abstract class BaseViewAdapter<E> extends RecyclerView.Adapter<CacheViewHolder> implements IRecyclerAdapter<E> {
     protected final ArrayList<E> items;
     protected final LayoutInflater inflater;
+    private ItemListDiffer<E> differ;
+    private final NotifyBatch batch = new NotifyBatch(this);
+    private ItemKeyIndex<E> keyIndex;
 
     public BaseViewAdapter(Context context, List<E> items) {
         this.inflater = LayoutInflater.from(context);
@@ -42,6 +49,28 @@ public abstract class BaseViewAdapter<E> extends RecyclerView.Adapter<CacheViewH
     @Override
     public abstract void onBindViewHolder(CacheViewHolder holder, int position);
 
+    /**
+     * 局部更新,payloads为空时完整绑定,否则先由onBindPayload处理,返回false时仍完整绑定
+     */
+    @Override
+    public void onBindViewHolder(CacheViewHolder holder, int position, List<Object> payloads) {
+        if (payloads.isEmpty() || !onBindPayload(holder, position, payloads)) {
+            onBindViewHolder(holder, position);
+        }
+    }
+
+    /**
+     * 由子类实现局部更新,如只更新进度/选中状态,不重新绑定文字图片
+     *
+     * @param holder
+     * @param position
+     * @param payloads notifyItemChanged传入的payload,不为空
+     * @return 是否已处理
+     */
+    protected boolean onBindPayload(CacheViewHolder holder, int position, List<Object> payloads) {
+        return false;
+    }
+
     @Override
     public int getItemCount() {
         return items.size();
@@ -50,14 +79,65 @@ public abstract class BaseViewAdapter<E> extends RecyclerView.Adapter<CacheViewH
 
     public void removeItems(List<E> list) {
         if(null!=list){
-            this.items.removeAll(list);
+            removeAllItems(list, false);
         }
     }
 
+    /**
+     * 移除所有与list中元素equals的条目,设置ItemKeyProvider后按键判断,连续移除的条目合并为一次范围通知
+     */
     public void removeItemsNotify(List<E> list) {
         if(null!=list){
-            this.items.removeAll(list);
-            notifyDataSetChanged();
+            beginBatch();
+            removeAllItems(list, true);
+            commit();
+        }
+    }
+
+    /**
+     * 一次遍历前移保留条目,有键时以键的散列集合判断是否移除O(n+m),否则按equals查找list
+     */
+    private void removeAllItems(List<E> list, boolean notify) {
+        if (list.isEmpty() || items.isEmpty()) return;
+        HashSet<Object> removeKeys = null;
+        if (null != keyIndex) {
+            removeKeys = new HashSet<>();
+            for (int i = 0; i < list.size(); i++) {
+                E e = list.get(i);
+                if (null != e) {
+                    removeKeys.add(keyIndex.getItemKey(e));
+                }
+            }
+        }
+        int size = items.size();
+        int write = 0;
+        int runStart = -1;
+        for (int read = 0; read < size; read++) {
+            E e = items.get(read);
+            if (null != removeKeys ? removeKeys.contains(keyIndex.getItemKey(e)) : list.contains(e)) {
+                if (-1 == runStart) {
+                    runStart = read;
+                }
+            } else {
+                if (-1 != runStart) {
+                    //之前的范围已移除,本次范围前移后起始于write
+                    indexRemoved(write, read - runStart);
+                    if (notify) {
+                        batch.removed(write, read - runStart);
+                    }
+                    runStart = -1;
+                }
+                items.set(write++, e);
+            }
+        }
+        if (-1 != runStart) {
+            indexRemoved(write, size - runStart);
+            if (notify) {
+                batch.removed(write, size - runStart);
+            }
+        }
+        if (write < size) {
+            items.subList(write, size).clear();
         }
     }
 
@@ -66,6 +146,7 @@ public abstract class BaseViewAdapter<E> extends RecyclerView.Adapter<CacheViewH
      */
     public void clear() {
         this.items.clear();
+        invalidateIndex();
     }
 
     /**
@@ -73,31 +154,92 @@ public abstract class BaseViewAdapter<E> extends RecyclerView.Adapter<CacheViewH
      */
     public void clearNotify() {
         this.items.clear();
-        notifyDataSetChanged();
+        invalidateIndex();
+        batch.dataSetChanged();
     }
 
 
     public void addItem(E e, int index) {
         if (null != e) {
             this.items.add(index, e);
+            indexInserted(index, 1);
         }
     }
 
     public void addItemNotify(E e, int index) {
         if (null != e) {
             this.items.add(index, e);
-            notifyItemInserted(index);
+            indexInserted(index, 1);
+            batch.inserted(index, 1);
         }
     }
 
+    /**
+     * 条目位置,设置ItemKeyProvider后按键查找,否则以equals查找
+     */
     public int indexOfItem(E e) {
         int index = -1;
         if (null != e) {
-            index = this.items.indexOf(e);
+            index = null != keyIndex ? keyIndex.indexOf(e) : this.items.indexOf(e);
         }
         return index;
     }
 
+    /**
+     * 设置条目键,启用键->位置索引,indexOfItem/contains/updateItem/remove(E)由O(n)遍历变为O(1)查找
+     * 键相同即视为同一条目,updateItem可用新对象替换旧条目,如实时消息/行情按id更新
+     * 直接修改items后未调用notifyDataSetChanged时,需调用invalidateItemIndex
+     *
+     * @param keyProvider 为空时关闭索引
+     */
+    public void setItemKeyProvider(ItemKeyProvider<E> keyProvider) {
+        if (null != keyIndex) {
+            unregisterAdapterDataObserver(keyIndex);
+            keyIndex = null;
+        }
+        if (null != keyProvider) {
+            keyIndex = new ItemKeyIndex<>(items, keyProvider);
+            registerAdapterDataObserver(keyIndex);
+        }
+    }
+
+    /**
+     * 清除键索引,下次查找时重建
+     */
+    public void invalidateItemIndex() {
+        invalidateIndex();
+    }
+
+    private void invalidateIndex() {
+        if (null != keyIndex) {
+            keyIndex.invalidateAll();
+        }
+    }
+
+    private void invalidateIndexFrom(int position) {
+        if (null != keyIndex) {
+            keyIndex.invalidateFrom(position);
+        }
+    }
+
+    private void indexInserted(int position, int count) {
+        if (null != keyIndex) {
+            keyIndex.inserted(position, count);
+        }
+    }
+
+    private void indexRemoved(int position, int count) {
+        if (null != keyIndex) {
+            keyIndex.removed(position, count);
+        }
+    }
+
+    private void updateIndex(int position) {
+        if (null != keyIndex) {
+            keyIndex.updated(position);
+        }
+    }
+
     public boolean contains(E e){
         return -1!=indexOfItem(e);
     }
@@ -105,19 +247,22 @@ public abstract class BaseViewAdapter<E> extends RecyclerView.Adapter<CacheViewH
     public void setItem(int index, E e) {
         if (index < getItemCount()) {
             items.set(index, e);
+            updateIndex(index);
         }
     }
 
     public void setItemNotify(int index, E e) {
         if (index < getItemCount()) {
             items.set(index, e);
-            notifyItemChanged(index);
+            updateIndex(index);
+            batch.changed(index, 1);
         }
     }
 
     public void addItem(E e) {
         if (null != e) {
             this.items.add(e);
+            indexInserted(items.size() - 1, 1);
         }
     }
 
@@ -125,18 +270,21 @@ public abstract class BaseViewAdapter<E> extends RecyclerView.Adapter<CacheViewH
         if (null != e) {
             this.items.add(e);
             int insertPosition = getItemCount() - 1;
-            notifyItemInserted(insertPosition);
+            indexInserted(insertPosition, 1);
+            batch.inserted(insertPosition, 1);
         }
     }
 
     public void addItems(List<E> items, int index) {
         if (null != items && !items.isEmpty()) {
             this.items.addAll(index, items);
+            indexInserted(index, items.size());
         }
     }
 
     public void addItems(List<E> items) {
         if (null != items && !items.isEmpty()) {
+            indexInserted(this.items.size(), items.size());
             this.items.addAll(items);
         }
     }
@@ -145,7 +293,8 @@ public abstract class BaseViewAdapter<E> extends RecyclerView.Adapter<CacheViewH
         if (null != items && !items.isEmpty()) {
             int size = items.size();
             this.items.addAll(index, items);
-            notifyItemRangeInserted(index, size);
+            indexInserted(index, size);
+            batch.inserted(index, size);
         }
     }
 
@@ -154,7 +303,8 @@ public abstract class BaseViewAdapter<E> extends RecyclerView.Adapter<CacheViewH
             int size = items.size();
             int itemCount = getItemCount();
             this.items.addAll(items);
-            notifyItemRangeInserted(itemCount, size);
+            indexInserted(itemCount, size);
+            batch.inserted(itemCount, size);
         }
     }
 
@@ -166,6 +316,7 @@ public abstract class BaseViewAdapter<E> extends RecyclerView.Adapter<CacheViewH
         while(index++<minCount){
             items.remove(start);
         }
+        indexRemoved(start, minCount);
     }
 
     public void removeNotifyItem(int start,int count){
@@ -174,25 +325,29 @@ public abstract class BaseViewAdapter<E> extends RecyclerView.Adapter<CacheViewH
         while(index++<minCount){
             items.remove(start);
         }
-        notifyItemRangeRemoved(start,minCount);
+        indexRemoved(start, minCount);
+        batch.removed(start, minCount);
     }
 
     public void remove(E e) {
-        if (null != e) {
-            remove(items.indexOf(e));
+        int index = indexOfItem(e);
+        if (-1 != index) {
+            remove(index);
         }
     }
 
     public void remove(int index) {
         if(!items.isEmpty()&&index<items.size()){
             items.remove(index);
+            indexRemoved(index, 1);
         }
     }
 
     public void removeNotify(int index) {
         if(!items.isEmpty()&&index<items.size()){
             items.remove(index);
-            notifyItemRemoved(index);
+            indexRemoved(index, 1);
+            batch.removed(index, 1);
         }
     }
 
@@ -204,36 +359,133 @@ public abstract class BaseViewAdapter<E> extends RecyclerView.Adapter<CacheViewH
      */
     public void updateItem(E e) {
         if (null != e) {
-            int index = items.indexOf(e);
+            int index = indexOfItem(e);
             if (-1 != index) {
                 items.set(index, e);
+                updateIndex(index);
             }
         }
     }
 
     public void updateItemNotify(E e) {
         if (null != e) {
-            int index = items.indexOf(e);
+            int index = indexOfItem(e);
             if (-1 != index) {
                 items.set(index, e);
-                notifyItemChanged(index);
+                updateIndex(index);
+                batch.changed(index, 1);
             }
         }
     }
 
     public void swapItems(final List<E> items) {
+        cancelDiff();
         this.items.clear();
         if (null != items) {
             this.items.addAll(items);
         }
+        invalidateIndex();
     }
 
     public void swapItemsNotify(final List<E> items) {
+        cancelDiff();
+        beginBatch();
         int itemCount=getItemCount();
         if(0!=itemCount){
             clearNotify();
         }
         addItemsNotify(items);
+        commit();
+    }
+
+    /**
+     * 开始批量修改,至commit前*Notify方法不立即通知,可嵌套
+     * 批量添加/移除/更新时,列表只收到合并后的少量通知,外层Adapter与分组也只更新一次
+     * <pre>
+     * adapter.beginBatch();
+     * try {
+     *     adapter.removeNotify(0);
+     *     adapter.addItemsNotify(list);
+     * } finally {
+     *     adapter.commit();
+     * }
+     * </pre>
+     */
+    public void beginBatch() {
+        batch.begin();
+    }
+
+    /**
+     * 提交批量修改,最外层提交时分发合并后的通知
+     */
+    public void commit() {
+        batch.commit();
+    }
+
+    public boolean isInBatch() {
+        return batch.isActive();
+    }
+
+    /**
+     * 设置差异比较回调,用于swapItemsDiffNotify,未设置时以equals比较
+     *
+     * @param callback
+     */
+    public void setItemDiffCallback(ItemDiffCallback<E> callback) {
+        obtainDiffer().setDiffCallback(callback);
+    }
+
+    /**
+     * 以差异方式替换数据,后台线程计算新旧数据最小变化后,在主线程逐项通知,保留条目绑定,动画与滑动位置
+     * 多次调用时只应用最后一次结果
+     *
+     * @param items
+     */
+    public void swapItemsDiffNotify(final List<E> items) {
+        obtainDiffer().submit(items);
+    }
+
+    /**
+     * 同步替换数据时,丢弃未应用的差异结果
+     */
+    private void cancelDiff() {
+        if (null != differ) {
+            differ.cancel();
+        }
+    }
+
+    private ItemListDiffer<E> obtainDiffer() {
+        if (null == differ) {
+            //差异通知并入批量修改,批量中调用时与之前的通知保持顺序
+            differ = new ItemListDiffer<>(new ListUpdateCallback() {
+                @Override
+                public void onInserted(int position, int count) {
+                    indexInserted(position, count);
+                    batch.inserted(position, count);
+                }
+
+                @Override
+                public void onRemoved(int position, int count) {
+                    indexRemoved(position, count);
+                    batch.removed(position, count);
+                }
+
+                @Override
+                public void onMoved(int fromPosition, int toPosition) {
+                    indexRemoved(fromPosition, 1);
+                    indexInserted(toPosition, 1);
+                    batch.moved(fromPosition, toPosition);
+                }
+
+                @Override
+                public void onChanged(int position, int count, Object payload) {
+                    //数据已整体替换,键索引不能按位置更新
+                    invalidateIndexFrom(position);
+                    batch.changed(position, count);
+                }
+            }, this.items);
+        }
+        return differ;
     }
 
     /**
@@ -264,6 +516,8 @@ public abstract class BaseViewAdapter<E> extends RecyclerView.Adapter<CacheViewH
      */
     public void swapItem(int oldPosition, int newPosition) {
         Collections.swap(items, oldPosition, newPosition);
+        updateIndex(oldPosition);
+        updateIndex(newPosition);
     }
 
     /**
@@ -275,7 +529,7 @@ public abstract class BaseViewAdapter<E> extends RecyclerView.Adapter<CacheViewH
 
     public void swapNotify(int oldPosition, int newPosition){
         swapItem(oldPosition, newPosition);
-        notifyItemMoved(oldPosition, newPosition);
+        batch.moved(oldPosition, newPosition);
     }
 
 
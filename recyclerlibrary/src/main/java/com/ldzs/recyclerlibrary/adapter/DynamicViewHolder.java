@@ -0,0 +1,49 @@
+package com.ldzs.recyclerlibrary.adapter;
+
+import android.content.Context;
+import android.support.v7.widget.RecyclerView;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.FrameLayout;
+
+/**
+ * 动态条目Holder对象
+ * 每个Holder持有自己的容器,动态view在绑定时才放入当前容器.
+ * 之前同一个view直接作为多个Holder的itemView,RecyclerView执行动画时会同时存在两个Holder,
+ * 导致:Called removeDetachedView with a view which is not flagged as tmp detached
+ */
+public class DynamicViewHolder extends BaseViewHolder {
+
+    public DynamicViewHolder(Context context) {
+        super(new FrameLayout(context));
+        itemView.setLayoutParams(new RecyclerView.LayoutParams(ViewGroup.LayoutParams.MATCH_PARENT, ViewGroup.LayoutParams.WRAP_CONTENT));
+    }
+
+    /**
+     * 将动态view放入当前容器,若其仍在其他Holder容器内,则先移除
+     *
+     * @param view
+     */
+    public void attach(View view) {
+        FrameLayout container = (FrameLayout) itemView;
+        if (null == view || container == view.getParent()) return;
+        container.removeAllViews();
+        ViewGroup parent = (ViewGroup) view.getParent();
+        if (null != parent) {
+            parent.removeView(view);
+        }
+        ViewGroup.LayoutParams layoutParams = view.getLayoutParams();
+        int width = ViewGroup.LayoutParams.MATCH_PARENT;
+        int height = ViewGroup.LayoutParams.WRAP_CONTENT;
+        if (null != layoutParams) {
+            width = layoutParams.width;
+            height = layoutParams.height;
+        }
+        //容器大小跟随动态view
+        ViewGroup.LayoutParams containerParams = container.getLayoutParams();
+        containerParams.width = width;
+        containerParams.height = height;
+        container.setLayoutParams(containerParams);
+        container.addView(view, new FrameLayout.LayoutParams(width, height));
+    }
+}
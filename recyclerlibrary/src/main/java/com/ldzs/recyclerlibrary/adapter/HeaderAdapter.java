@@ -10,6 +10,7 @@ import com.ldzs.recyclerlibrary.adapter.tree.TreeAdapter;
 import com.ldzs.recyclerlibrary.callback.OnItemClickListener;
 
 import java.util.ArrayList;
+import java.util.List;
 
 /**
  * 包装RecyclerView的数据适配器,添加头和尾操作
@@ -283,6 +284,21 @@ public class HeaderAdapter extends RecyclerView.Adapter<RecyclerView.ViewHolder>
         }
     }
 
+    /**
+     * 局部更新,payload原样传递给子Adapter,头/尾不处理
+     */
+    @Override
+    public void onBindViewHolder(RecyclerView.ViewHolder holder, int position, List<Object> payloads) {
+        if (payloads.isEmpty()) {
+            onBindViewHolder(holder, position);
+        } else if (!isHeader(position)) {
+            position -= getHeadersCount();
+            if (null != adapter && position < adapter.getItemCount()) {
+                adapter.onBindViewHolder(holder, position, payloads);
+            }
+        }
+    }
+
     /**
      * 子类点击使用
      *
@@ -0,0 +1,154 @@
+package com.ldzs.recyclerlibrary.adapter;
+
+import android.support.v7.widget.RecyclerView;
+
+import com.ldzs.recyclerlibrary.callback.ItemKeyProvider;
+
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * 条目键->位置索引
+ * 记录的位置相对headOffset,[validStart,validEnd)位置的键位置已记录,查找未命中时才重建其前后部分
+ * 在有效范围之前插入/移除只偏移headOffset与有效范围,倒序聊天等头部插入也为O(1),
+ * 在有效范围内插入/移除把validEnd前移到变化位置,尾部追加与单项更新为O(1),查找命中时为O(1)
+ * 移除条目的旧键不立即删除,查找时校验键位置的条目,不一致即视为不存在
+ * 由所属Adapter修改数据时同步调用,另监听整体刷新,直接修改数据集合后只按位置通知时需调用invalidateAll
+ */
+final class ItemKeyIndex<E> extends RecyclerView.AdapterDataObserver {
+    private final List<E> items;
+    private final ItemKeyProvider<E> keyProvider;
+    private final HashMap<Object, Integer> positions;//键->位置-headOffset
+    private int headOffset;
+    private int validStart;
+    private int validEnd;
+
+    ItemKeyIndex(List<E> items, ItemKeyProvider<E> keyProvider) {
+        this.items = items;
+        this.keyProvider = keyProvider;
+        this.positions = new HashMap<>();
+    }
+
+    Object getItemKey(E e) {
+        return keyProvider.getItemKey(e);
+    }
+
+    /**
+     * @return 键相同的条目位置,不存在时返回-1
+     */
+    int indexOf(E e) {
+        Object key = keyProvider.getItemKey(e);
+        int size = items.size();
+        int index = getPosition(key);
+        if (validStart <= index && index < validEnd && index < size && isKeyAt(key, index)) {
+            return index;
+        }
+        if (0 < validStart || validEnd < size) {
+            rebuild(size);
+            index = getPosition(key);
+            if (0 <= index && index < size && isKeyAt(key, index)) {
+                return index;
+            }
+        }
+        positions.remove(key);
+        return -1;
+    }
+
+    /**
+     * 在position插入count个条目
+     */
+    void inserted(int position, int count) {
+        if (position <= validStart) {
+            //有效范围整体后移
+            headOffset += count;
+            validStart += count;
+            validEnd += count;
+        } else if (position < validEnd) {
+            validEnd = position;
+        }
+    }
+
+    /**
+     * 移除position起count个条目
+     */
+    void removed(int position, int count) {
+        int end = position + count;
+        if (end <= validStart) {
+            //有效范围整体前移
+            headOffset -= count;
+            validStart -= count;
+            validEnd -= count;
+        } else if (position <= validStart) {
+            //移除有效范围头部,其后条目前移到position
+            headOffset -= count;
+            validStart = position;
+            validEnd = Math.max(position, validEnd - count);
+        } else if (position < validEnd) {
+            validEnd = position;
+        }
+    }
+
+    /**
+     * position及之后位置失效
+     */
+    void invalidateFrom(int position) {
+        if (position <= validStart) {
+            validStart = validEnd = 0;
+        } else {
+            validEnd = Math.min(validEnd, position);
+        }
+    }
+
+    void invalidateAll() {
+        headOffset = validStart = validEnd = 0;
+        positions.clear();
+    }
+
+    /**
+     * 单个位置条目被替换,条目个数不变
+     */
+    void updated(int position) {
+        if (validStart <= position && position < validEnd && position < items.size()) {
+            put(position);
+        }
+    }
+
+    private int getPosition(Object key) {
+        Integer position = positions.get(key);
+        return null == position ? -1 : position + headOffset;
+    }
+
+    private void put(int position) {
+        positions.put(keyProvider.getItemKey(items.get(position)), position - headOffset);
+    }
+
+    private boolean isKeyAt(Object key, int index) {
+        Object itemKey = keyProvider.getItemKey(items.get(index));
+        return key == itemKey || (null != key && key.equals(itemKey));
+    }
+
+    private void rebuild(int size) {
+        validEnd = Math.min(validEnd, size);
+        //移除条目残留的旧键过多时,整体重建
+        if (positions.size() > 2 * size + 16) {
+            positions.clear();
+            validStart = validEnd = 0;
+        }
+        if (validStart >= validEnd) {
+            validStart = validEnd = 0;
+        }
+        for (int i = 0; i < validStart; i++) {
+            put(i);
+        }
+        for (int i = validEnd; i < size; i++) {
+            put(i);
+        }
+        validStart = 0;
+        validEnd = size;
+    }
+
+    @Override
+    public void onChanged() {
+        invalidateAll();
+    }
+}
@@ -0,0 +1,152 @@
+package com.ldzs.recyclerlibrary.adapter;
+
+import android.os.AsyncTask;
+import android.os.Handler;
+import android.os.Looper;
+import android.support.v7.util.DiffUtil;
+import android.support.v7.util.ListUpdateCallback;
+
+import com.ldzs.recyclerlibrary.callback.ItemDiffCallback;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+/**
+ * 异步差异更新
+ * 在后台线程以DiffUtil计算新旧数据最小变化,回到主线程后替换数据并逐项通知插入/移除/移动/更新,保留条目绑定与动画
+ * 每次提交递增版本号,只应用最后一次提交的结果,应用前数据已被修改时以当前数据重新计算
+ * 通知经由callback分发,由Adapter并入批量修改,与beginBatch/commit内其它通知保持顺序
+ */
+public class ItemListDiffer<E> {
+    private static final Handler MAIN_HANDLER = new Handler(Looper.getMainLooper());
+    private final ListUpdateCallback callback;
+    private final List<E> items;
+    private Executor executor;
+    private ItemDiffCallback<E> diffCallback;
+    private int generation;
+
+    /**
+     * @param callback 变化通知
+     * @param items    数据适配器持有的数据集合,直接替换其内容
+     */
+    public ItemListDiffer(ListUpdateCallback callback, List<E> items) {
+        this.callback = callback;
+        this.items = items;
+        this.executor = AsyncTask.THREAD_POOL_EXECUTOR;
+    }
+
+    public void setExecutor(Executor executor) {
+        this.executor = executor;
+    }
+
+    /**
+     * 设置比较回调,未设置时均以equals比较
+     *
+     * @param callback
+     */
+    public void setDiffCallback(ItemDiffCallback<E> callback) {
+        this.diffCallback = callback;
+    }
+
+    /**
+     * 取消未应用的差异结果
+     */
+    public void cancel() {
+        generation++;
+    }
+
+    /**
+     * 提交新数据
+     *
+     * @param newItems
+     */
+    public void submit(List<E> newItems) {
+        final int submitGeneration = ++generation;
+        final List<E> oldList = new ArrayList<>(items);
+        final List<E> newList = null == newItems ? new ArrayList<E>() : new ArrayList<>(newItems);
+        if (oldList.isEmpty() || newList.isEmpty()) {
+            //一方为空时无需比较
+            int oldSize = oldList.size();
+            items.clear();
+            items.addAll(newList);
+            if (0 < oldSize) {
+                callback.onRemoved(0, oldSize);
+            }
+            if (!newList.isEmpty()) {
+                callback.onInserted(0, newList.size());
+            }
+            return;
+        }
+        final ItemDiffCallback<E> diffCallback = this.diffCallback;
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                final DiffUtil.DiffResult result = DiffUtil.calculateDiff(new ListCallback<>(oldList, newList, diffCallback));
+                MAIN_HANDLER.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (submitGeneration != generation) return;
+                        if (!isSameList(oldList)) {
+                            //计算期间数据被修改,差异已失效
+                            submit(newList);
+                        } else {
+                            items.clear();
+                            items.addAll(newList);
+                            result.dispatchUpdatesTo(callback);
+                        }
+                    }
+                });
+            }
+        });
+    }
+
+    private boolean isSameList(List<E> list) {
+        int size = list.size();
+        if (size != items.size()) return false;
+        for (int i = 0; i < size; i++) {
+            if (list.get(i) != items.get(i)) return false;
+        }
+        return true;
+    }
+
+    private static boolean equals(Object a, Object b) {
+        return a == b || (null != a && a.equals(b));
+    }
+
+    private static class ListCallback<E> extends DiffUtil.Callback {
+        private final List<E> oldList;
+        private final List<E> newList;
+        private final ItemDiffCallback<E> callback;
+
+        ListCallback(List<E> oldList, List<E> newList, ItemDiffCallback<E> callback) {
+            this.oldList = oldList;
+            this.newList = newList;
+            this.callback = callback;
+        }
+
+        @Override
+        public int getOldListSize() {
+            return oldList.size();
+        }
+
+        @Override
+        public int getNewListSize() {
+            return newList.size();
+        }
+
+        @Override
+        public boolean areItemsTheSame(int oldItemPosition, int newItemPosition) {
+            E oldItem = oldList.get(oldItemPosition);
+            E newItem = newList.get(newItemPosition);
+            return null == callback ? ItemListDiffer.equals(oldItem, newItem) : callback.areItemsTheSame(oldItem, newItem);
+        }
+
+        @Override
+        public boolean areContentsTheSame(int oldItemPosition, int newItemPosition) {
+            E oldItem = oldList.get(oldItemPosition);
+            E newItem = newList.get(newItemPosition);
+            return null == callback ? ItemListDiffer.equals(oldItem, newItem) : callback.areContentsTheSame(oldItem, newItem);
+        }
+    }
+}
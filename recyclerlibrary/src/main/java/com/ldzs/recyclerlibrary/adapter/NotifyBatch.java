@@ -0,0 +1,164 @@
+package com.ldzs.recyclerlibrary.adapter;
+
+import android.support.v7.widget.RecyclerView;
+
+import com.ldzs.recyclerlibrary.select.IntervalSet;
+
+/**
+ * 批量通知记录
+ * beginBatch/commit之间的数据变化不立即通知,提交时合并后一次分发:
+ * 连续插入/移除合并为一个范围,移除刚插入的条目只缩小插入范围,
+ * 更新以区间集记录并随插入/移除/移动偏移,最后按最少区间通知,刚插入的条目不再通知更新
+ * 期间有整体刷新时,只通知一次notifyDataSetChanged
+ */
+final class NotifyBatch {
+    private static final int TYPE_INSERT = 0;
+    private static final int TYPE_REMOVE = 1;
+    private static final int TYPE_MOVE = 2;
+    private final RecyclerView.Adapter adapter;
+    private final IntervalSet changes;//更新位置,当前坐标
+    private final IntervalSet inserted;//本批次插入位置,当前坐标
+    private int[] ops;//每个操作3个值:类型,起始/from,个数/to
+    private int opCount;
+    private boolean dataSetChanged;
+    private int depth;
+
+    NotifyBatch(RecyclerView.Adapter adapter) {
+        this.adapter = adapter;
+        this.changes = new IntervalSet();
+        this.inserted = new IntervalSet();
+        this.ops = new int[3 * 8];
+    }
+
+    void begin() {
+        depth++;
+    }
+
+    /**
+     * 最外层提交时分发
+     */
+    void commit() {
+        if (0 < depth && 0 == --depth) {
+            flush();
+        }
+    }
+
+    boolean isActive() {
+        return 0 < depth;
+    }
+
+    void inserted(int start, int count) {
+        if (!isActive()) {
+            adapter.notifyItemRangeInserted(start, count);
+        } else if (!dataSetChanged && 0 < count) {
+            changes.insert(start, count);
+            inserted.insert(start, count);
+            inserted.add(start, start + count);
+            int last = (opCount - 1) * 3;
+            if (0 <= last && TYPE_INSERT == ops[last] && ops[last + 1] <= start && start <= ops[last + 1] + ops[last + 2]) {
+                //与上一次插入相邻,合并
+                ops[last + 2] += count;
+            } else {
+                appendOp(TYPE_INSERT, start, count);
+            }
+        }
+    }
+
+    void removed(int start, int count) {
+        if (!isActive()) {
+            adapter.notifyItemRangeRemoved(start, count);
+        } else if (!dataSetChanged && 0 < count) {
+            changes.removeRange(start, count);
+            inserted.removeRange(start, count);
+            int last = (opCount - 1) * 3;
+            if (0 <= last && TYPE_INSERT == ops[last] && ops[last + 1] <= start && start + count <= ops[last + 1] + ops[last + 2]) {
+                //移除上一次插入的条目,缩小插入范围
+                ops[last + 2] -= count;
+                if (0 == ops[last + 2]) {
+                    opCount--;
+                }
+            } else if (0 <= last && TYPE_REMOVE == ops[last] && start == ops[last + 1]) {
+                ops[last + 2] += count;
+            } else if (0 <= last && TYPE_REMOVE == ops[last] && start + count == ops[last + 1]) {
+                ops[last + 1] = start;
+                ops[last + 2] += count;
+            } else {
+                appendOp(TYPE_REMOVE, start, count);
+            }
+        }
+    }
+
+    void changed(int start, int count) {
+        if (!isActive()) {
+            adapter.notifyItemRangeChanged(start, count);
+        } else if (!dataSetChanged && 0 < count) {
+            changes.add(start, start + count);
+        }
+    }
+
+    void moved(int fromPosition, int toPosition) {
+        if (!isActive()) {
+            adapter.notifyItemMoved(fromPosition, toPosition);
+        } else if (!dataSetChanged && fromPosition != toPosition) {
+            changes.move(fromPosition, toPosition, 1);
+            inserted.move(fromPosition, toPosition, 1);
+            appendOp(TYPE_MOVE, fromPosition, toPosition);
+        }
+    }
+
+    void dataSetChanged() {
+        if (!isActive()) {
+            adapter.notifyDataSetChanged();
+        } else {
+            dataSetChanged = true;
+            opCount = 0;
+            changes.clear();
+            inserted.clear();
+        }
+    }
+
+    private void appendOp(int type, int value1, int value2) {
+        if (ops.length < (opCount + 1) * 3) {
+            int[] newOps = new int[ops.length * 2];
+            System.arraycopy(ops, 0, newOps, 0, opCount * 3);
+            ops = newOps;
+        }
+        int index = opCount * 3;
+        ops[index] = type;
+        ops[index + 1] = value1;
+        ops[index + 2] = value2;
+        opCount++;
+    }
+
+    private void flush() {
+        if (dataSetChanged) {
+            adapter.notifyDataSetChanged();
+        } else {
+            for (int i = 0; i < opCount; i++) {
+                int index = i * 3;
+                switch (ops[index]) {
+                    case TYPE_INSERT:
+                        adapter.notifyItemRangeInserted(ops[index + 1], ops[index + 2]);
+                        break;
+                    case TYPE_REMOVE:
+                        adapter.notifyItemRangeRemoved(ops[index + 1], ops[index + 2]);
+                        break;
+                    case TYPE_MOVE:
+                        adapter.notifyItemMoved(ops[index + 1], ops[index + 2]);
+                        break;
+                }
+            }
+            //更新在所有结构变化之后,以当前坐标通知
+            for (int i = 0; i < inserted.getRangeCount(); i++) {
+                changes.remove(inserted.getStart(i), inserted.getEnd(i));
+            }
+            for (int i = 0; i < changes.getRangeCount(); i++) {
+                adapter.notifyItemRangeChanged(changes.getStart(i), changes.getEnd(i) - changes.getStart(i));
+            }
+        }
+        dataSetChanged = false;
+        opCount = 0;
+        changes.clear();
+        inserted.clear();
+    }
+}
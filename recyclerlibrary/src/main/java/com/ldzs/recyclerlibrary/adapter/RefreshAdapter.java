@@ -59,6 +59,13 @@ public class RefreshAdapter extends DynamicAdapter {
         }
     }
 
+    @Override
+    public void onBindViewHolder(RecyclerView.ViewHolder holder, int position, List<Object> payloads) {
+        if(!isFooterItem(position)){
+            super.onBindViewHolder(holder, position, payloads);
+        }
+    }
+
     @Override
     public int getItemViewType(int position) {
         int itemViewType;
@@ -156,7 +163,7 @@ public class RefreshAdapter extends DynamicAdapter {
      */
     public void removeHeaderView(int index){
         if(index< footerViewTotal){
-            removeDynamicView(itemPositions[index]);
+            removeDynamicView(getDynamicPosition(index));
         }
     }
 
@@ -186,11 +193,28 @@ public class RefreshAdapter extends DynamicAdapter {
         return findView;
     }
 
+    @Override
+    public long getItemId(int position) {
+        long itemId;
+        if(isFooterItem(position)){
+            //尾viewType唯一且不复用,作为其id
+            itemId = ID_TYPE_FOOTER | (TYPE_FOOTER - getItemViewType(position));
+        } else {
+            itemId = super.getItemId(position);
+        }
+        return itemId;
+    }
+
     @Override
     protected boolean isFullItem(int position) {
         return isFooterItem(position);
     }
 
+    @Override
+    public int toChildPosition(int position) {
+        return isFooterItem(position) ? RecyclerView.NO_POSITION : super.toChildPosition(position);
+    }
+
 
     public static class FooterViewItem {
         public final int viewType;
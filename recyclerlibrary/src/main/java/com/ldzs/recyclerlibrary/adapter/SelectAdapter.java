@@ -6,6 +6,10 @@ import android.view.View;
 import com.ldzs.recyclerlibrary.PullToRefreshRecyclerView;
 import com.ldzs.recyclerlibrary.Range;
 import com.ldzs.recyclerlibrary.callback.Selectable;
+import com.ldzs.recyclerlibrary.select.IntervalList;
+import com.ldzs.recyclerlibrary.select.IntervalSet;
+import com.ldzs.recyclerlibrary.select.SelectionPayload;
+import com.ldzs.recyclerlibrary.select.SelectionModel;
 
 import java.util.ArrayList;
 import java.util.List;
@@ -13,6 +17,12 @@ import java.util.List;
 /**
  * Created by cz on 4/3/16.
  * 一个可设置选择模式的数据乱配器
+ * 多选集以稳定id为键,绑定时O(1)判断选中,子Adapter无稳定id时与块选择一样使用区间集,数据增删时随之偏移
+ * 稳定id多选时同时以区间集记录选中位置,选中个数O(1),位置列表由区间集展开,不遍历子条目;
+ * 移除条目的id无法再由位置取得,暂留在id集内,残留过多时按选中位置重建;整体刷新后选中位置在需要时遍历重建一次
+ * 全选/反选/范围选择只改变区间,并只对状态变化的区间通知更新,屏幕外部分合并通知
+ * 稳定id多选全选/反选时不逐个记录id,只置反转标记,此时id集记录未选中条目,之后插入的条目视为选中
+ * 选中状态变化以SelectionPayload通知,只回调Selectable#onSelectItem,不重新绑定整个条目
  */
 public class SelectAdapter extends RefreshAdapter {
     public static final int MAX_COUNT=Integer.MAX_VALUE;
@@ -23,19 +33,40 @@ public class SelectAdapter extends RefreshAdapter {
     public static final int SINGLE_SELECT = PullToRefreshRecyclerView.SINGLE_SELECT;//单选
     public static final int MULTI_SELECT = PullToRefreshRecyclerView.MULTI_SELECT;//多选
     public static final int RECTANGLE_SELECT = PullToRefreshRecyclerView.RECTANGLE_SELECT;//块选择
-    private final ArrayList<Integer> multiSelectItems;//选中集
+    private final SelectionModel selection;//多选集,稳定id
+    private final IntervalSet ranges;//多选/块选择的选中子条目位置,稳定id多选时与id集同步
+    private final IntervalList selectedList;//选中位置只读视图,不展开区间
+    private boolean rangesStale;//稳定id多选时,整体刷新后选中位置失效
+    private boolean selectionInverted;//稳定id多选全选/反选后,id集记录未选中条目
     private PullToRefreshRecyclerView.OnSingleSelectListener singleSelectListener;
     private PullToRefreshRecyclerView.OnMultiSelectListener multiSelectListener;
     private PullToRefreshRecyclerView.OnRectangleSelectListener rectangleSelectListener;
+    private PullToRefreshRecyclerView.OnRangeSelectListener rangeSelectListener;
+    private RecyclerView recyclerView;
     private int selectPosition;// 选中位置
     private int selectMaxCount;
-    private int start, end;//截选范围
+    private int start, end;//截选点击范围
     private int mode;//选择模式
 
     public SelectAdapter(RecyclerView.Adapter adapter) {
         super(adapter);
         selectPosition=-1;
-        multiSelectItems = new ArrayList<>();
+        start=end=-1;
+        selection = new SelectionModel();
+        ranges = new IntervalSet();
+        selectedList = new IntervalList(ranges);
+    }
+
+    @Override
+    public void onAttachedToRecyclerView(RecyclerView recyclerView) {
+        super.onAttachedToRecyclerView(recyclerView);
+        this.recyclerView=recyclerView;
+    }
+
+    @Override
+    public void onDetachedFromRecyclerView(RecyclerView recyclerView) {
+        super.onDetachedFromRecyclerView(recyclerView);
+        this.recyclerView=null;
     }
 
     /*
@@ -44,27 +75,19 @@ public class SelectAdapter extends RefreshAdapter {
      * @param mode
      */
     public void setSelectMode(int mode) {
-        int headersCount = getHeaderViewCount();
         switch (this.mode) {
             case SINGLE_SELECT:
                 //清除单选择状态
                 int lastSelectPosition=selectPosition;
                 selectPosition = -1;
                 if(INVALID_POSITION!=lastSelectPosition){
-                    notifyItemChanged(lastSelectPosition + headersCount);
+                    notifyChildItemChanged(lastSelectPosition);
                 }
                 break;
             case MULTI_SELECT:
-                List<Integer> lastItems=new ArrayList<>(multiSelectItems);
-                multiSelectItems.clear();
-                for (Integer position : lastItems) {
-                    notifyItemChanged(position+headersCount);
-                }
-                break;
             case RECTANGLE_SELECT:
-                int s = Math.min(start, end) + headersCount, e = Math.max(start, end) + headersCount;
-                start = end = 0;
-                notifyItemRangeChanged(s, e - s+1);
+                start = end = -1;
+                clearSelection();
                 break;
         }
         this.mode = mode;
@@ -75,15 +98,12 @@ public class SelectAdapter extends RefreshAdapter {
     }
 
     public void setSingleSelectPosition(int position){
-        this.selectPosition=position;
         int lastPosition=selectPosition;
-        if(0<=position&&position<getItemCount()){
-            //如果在正常范围内
-            notifyItemChanged(position);
-        } else {
-            //删掉上一个选择的条目
-            notifyItemChanged(lastPosition);
-        }
+        this.selectPosition=position;
+        //删掉上一个选择的条目
+        notifyChildItemChanged(lastPosition);
+        //如果在正常范围内
+        notifyChildItemChanged(position);
     }
 
     public int getSingleSelectPosition(){
@@ -92,52 +112,401 @@ public class SelectAdapter extends RefreshAdapter {
 
 
     public void setMultiSelectItems(List<Integer> items){
-        multiSelectItems.clear();
-        multiSelectItems.addAll(items);
-        notifyDataSetChanged();
+        selection.clear();
+        ranges.clear();
+        rangesStale=selectionInverted=false;
+        boolean positionSelection = isPositionSelection();
+        for(int i=0;i<items.size();i++){
+            int position=items.get(i);
+            ranges.add(position,position+1);
+            if(!positionSelection){
+                selection.add(adapter.getItemId(position));
+            }
+        }
+        notifyChildItemRangeChanged(0,null==adapter?-1:adapter.getItemCount()-1);
     }
 
+    /**
+     * @return 选中子条目位置,按位置排序,由区间集展开
+     */
     public List<Integer> getMultiSelectItems(){
-        return multiSelectItems;
+        return new ArrayList<>(getSelectedList());
+    }
+
+    /**
+     * @return 选中子条目位置只读视图,随选中集变化
+     */
+    private List<Integer> getSelectedList(){
+        getSelectedRanges();
+        return selectedList;
+    }
+
+    /**
+     * 按稳定id设置选中集,子Adapter无稳定id时,id为子条目位置
+     * @param ids
+     */
+    public void setSelectedIds(long[] ids){
+        selection.clear();
+        ranges.clear();
+        selectionInverted=false;
+        boolean positionSelection = isPositionSelection();
+        for(int i=0;i<ids.length;i++){
+            if(positionSelection){
+                ranges.add((int)ids[i],(int)ids[i]+1);
+            } else {
+                selection.add(ids[i]);
+            }
+        }
+        //id对应位置在需要时再查找
+        rangesStale=!positionSelection;
+        notifyChildItemRangeChanged(0,null==adapter?-1:adapter.getItemCount()-1);
+    }
+
+    /**
+     * @return 选中条目稳定id,按位置排序,子Adapter无稳定id时为子条目位置
+     */
+    public long[] getSelectedIds(){
+        boolean idSelection = isIdSelection();
+        int[] positions = getSelectedPositions();
+        long[] ids=new long[positions.length];
+        for(int i=0;i<positions.length;i++){
+            ids[i]=idSelection?adapter.getItemId(positions[i]):positions[i];
+        }
+        return ids;
+    }
+
+    /**
+     * @return 选中个数,O(1)
+     */
+    public int getSelectedCount(){
+        return getSelectedRanges().size();
+    }
+
+    public boolean isItemSelected(int childPosition){
+        switch (mode) {
+            case SINGLE_SELECT:
+                return selectPosition == childPosition;
+            case MULTI_SELECT:
+                return isIdSelection()?isIdSelected(adapter.getItemId(childPosition)):ranges.contains(childPosition);
+            case RECTANGLE_SELECT:
+                return ranges.contains(childPosition);
+        }
+        return false;
+    }
+
+    /**
+     * 稳定id是否选中,反转时id集内为未选中
+     */
+    private boolean isIdSelected(long id){
+        return selection.contains(id)!=selectionInverted;
+    }
+
+    private void setIdSelected(long id,boolean selected){
+        if(selected!=selectionInverted){
+            selection.add(id);
+        } else {
+            selection.remove(id);
+        }
+    }
+
+    /**
+     * 获得选中区间集,子条目位置,不可修改
+     * @return
+     */
+    public IntervalSet getSelectedRanges(){
+        if(rangesStale){
+            rebuildRanges();
+        }
+        return ranges;
+    }
+
+    /**
+     * 整体刷新后按id集遍历子条目重建选中位置,只执行一次
+     */
+    private void rebuildRanges(){
+        rangesStale=false;
+        ranges.clear();
+        if(!isIdSelection()||selection.isEmpty()&&!selectionInverted) return;
+        int itemCount = adapter.getItemCount();
+        for(int i=0;i<itemCount;i++){
+            if(isIdSelected(adapter.getItemId(i))){
+                ranges.add(i,i+1);
+            }
+        }
+    }
+
+    /**
+     * @return 选中子条目位置,按位置排序,由区间集展开,O(选中个数)
+     */
+    public int[] getSelectedPositions(){
+        IntervalSet ranges = getSelectedRanges();
+        int[] positions=new int[ranges.size()];
+        int count=0;
+        for(int i=0;i<ranges.getRangeCount();i++){
+            for(int position=ranges.getStart(i);position<ranges.getEnd(i);position++){
+                positions[count++]=position;
+            }
+        }
+        return positions;
+    }
+
+    /**
+     * 全选,只在多选/块选择时有效,多选时超出最大选择个数的部分按位置顺序截断
+     * 稳定id多选且不超出最大选择个数时只置反转标记,不访问子条目id
+     */
+    public void selectAll(){
+        if(!isRangeSelectMode()||null==adapter) return;
+        int itemCount = adapter.getItemCount();
+        if(isIdSelection()&&itemCount<=selectMaxCount){
+            IntervalSet ranges = getSelectedRanges();
+            IntervalSet last=new IntervalSet(ranges);
+            selection.clear();
+            selectionInverted=true;
+            ranges.add(0,itemCount);
+            notifyBulkSelectChanged(IntervalSet.difference(last,ranges),last.size());
+        } else {
+            selectRange(0,itemCount-1);
+        }
+    }
+
+    /**
+     * 选中范围[start,end]并入当前选中集,只在多选/块选择时有效
+     * 多选时只按位置顺序选中到最大选择个数
+     * @param start
+     * @param end
+     */
+    public void selectRange(int start,int end){
+        if(!isRangeSelectMode()||null==adapter) return;
+        start=Math.max(0,Math.min(start,end));
+        end=Math.min(adapter.getItemCount()-1,Math.max(start,end));
+        if(start>end) return;
+        IntervalSet ranges = getSelectedRanges();
+        int lastSize=ranges.size();
+        IntervalSet selected=new IntervalSet(ranges);
+        selected.add(start,end+1);
+        IntervalSet changed = IntervalSet.difference(ranges, selected);
+        if(MULTI_SELECT==mode){
+            changed=limit(changed,selectMaxCount-lastSize);
+        }
+        boolean idSelection = isIdSelection();
+        for(int i=0;i<changed.getRangeCount();i++){
+            ranges.add(changed.getStart(i),changed.getEnd(i));
+            if(idSelection){
+                //只记录新选中条目id
+                for(int position=changed.getStart(i);position<changed.getEnd(i);position++){
+                    setIdSelected(adapter.getItemId(position),true);
+                }
+            }
+        }
+        notifyBulkSelectChanged(changed,lastSize);
+    }
+
+    /**
+     * 取区间集按位置顺序的前count个位置
+     */
+    private static IntervalSet limit(IntervalSet ranges,int count){
+        if(ranges.size()<=count) return ranges;
+        IntervalSet result=new IntervalSet();
+        for(int i=0;i<ranges.getRangeCount()&&0<count;i++){
+            int end=Math.min(ranges.getEnd(i),ranges.getStart(i)+count);
+            result.add(ranges.getStart(i),end);
+            count-=end-ranges.getStart(i);
+        }
+        return result;
+    }
+
+    /**
+     * 反选全部子条目,只在多选/块选择时有效,多选时反选后超出最大选择个数则不反选
+     * 稳定id多选时只翻转反转标记,不访问子条目id
+     */
+    public void invertSelection(){
+        if(!isRangeSelectMode()||null==adapter) return;
+        int itemCount = adapter.getItemCount();
+        IntervalSet ranges = getSelectedRanges();
+        int lastSize=ranges.size();
+        if(MULTI_SELECT==mode&&itemCount-lastSize>selectMaxCount) return;
+        if(isIdSelection()){
+            selectionInverted=!selectionInverted;
+        }
+        ranges.invert(0,itemCount);
+        //反选时所有条目状态均变化
+        IntervalSet changed=new IntervalSet();
+        changed.add(0,itemCount);
+        notifyBulkSelectChanged(changed,lastSize);
+    }
+
+    /**
+     * 清空多选/块选择集
+     */
+    public void clearSelection(){
+        IntervalSet changed=new IntervalSet(getSelectedRanges());
+        selection.clear();
+        ranges.clear();
+        selectionInverted=false;
+        notifyBulkSelectChanged(changed,changed.size());
+    }
+
+    private boolean isRangeSelectMode(){
+        return MULTI_SELECT==mode||RECTANGLE_SELECT==mode;
+    }
+
+    /**
+     * 多选时,子Adapter有稳定id才以id为键
+     */
+    private boolean isIdSelection(){
+        return MULTI_SELECT==mode&&!isPositionSelection();
+    }
+
+    private boolean isPositionSelection(){
+        return null==adapter||!adapter.hasStableIds();
+    }
+
+    /**
+     * 全选/反选等批量选择后通知更新,多选时回调多选监听,v为列表
+     * @param lastSize 变化前选中个数
+     */
+    private void notifyBulkSelectChanged(IntervalSet changed,int lastSize){
+        notifySelectionChanged(changed);
+        if(0<changed.getRangeCount()&&MULTI_SELECT==mode&&null!=multiSelectListener){
+            multiSelectListener.onMultiSelect(recyclerView,getSelectedList(),lastSize,selectMaxCount);
+        }
+    }
+
+    /**
+     * 以选中集副本回调区间选择监听,监听内修改不影响选中集
+     */
+    private void dispatchRangeSelect(){
+        if(null!=rangeSelectListener){
+            rangeSelectListener.onRangeSelect(new IntervalSet(ranges));
+        }
+    }
+
+    /**
+     * 只对状态变化区间通知更新
+     * 可见范围内每个变化区间通知一次,可见范围之前/之后的变化区间各合并为一次通知,不绑定,只使缓存条目失效
+     * @param changed 状态变化的子条目区间
+     */
+    private void notifySelectionChanged(IntervalSet changed){
+        int rangeCount = changed.getRangeCount();
+        if(0<rangeCount&&!isIdSelection()){
+            dispatchRangeSelect();
+        }
+        if(0==rangeCount||null==adapter) return;
+        int first=Integer.MAX_VALUE,last=Integer.MIN_VALUE;
+        if(null!=recyclerView){
+            for(int i=0;i<recyclerView.getChildCount();i++){
+                int position = recyclerView.getChildAdapterPosition(recyclerView.getChildAt(i));
+                int childPosition = RecyclerView.NO_POSITION==position?RecyclerView.NO_POSITION:toChildPosition(position);
+                if(RecyclerView.NO_POSITION!=childPosition){
+                    first=Math.min(first,childPosition);
+                    last=Math.max(last,childPosition);
+                }
+            }
+        }
+        if(first>last){
+            //无可见子条目,整体通知一次
+            notifyChildItemRangeChanged(changed.getStart(0),changed.getEnd(rangeCount-1)-1);
+            return;
+        }
+        int beforeStart=-1,afterStart=-1,afterEnd=-1;
+        for(int i=0;i<rangeCount;i++){
+            int s=changed.getStart(i),e=changed.getEnd(i)-1;
+            if(s<first&&-1==beforeStart){
+                beforeStart=s;
+            }
+            if(last<e){
+                if(-1==afterStart) afterStart=Math.max(s,last+1);
+                afterEnd=e;
+            }
+            //可见部分
+            int visibleStart=Math.max(s,first),visibleEnd=Math.min(e,last);
+            if(visibleStart<=visibleEnd){
+                notifyChildItemRangeChanged(visibleStart,visibleEnd);
+            }
+        }
+        if(-1!=beforeStart){
+            notifyChildItemRangeChanged(beforeStart,first-1);
+        }
+        if(-1!=afterStart){
+            notifyChildItemRangeChanged(afterStart,afterEnd);
+        }
     }
 
     public void setRectangleSelectPosition(int start,int end){
         this.start=start;
         this.end=end;
-        notifyItemRangeChanged(start,end-start);
+        IntervalSet last=new IntervalSet(ranges);
+        ranges.clear();
+        ranges.add(Math.max(0,Math.min(start,end)),Math.max(start,end)+1);
+        notifySelectionChanged(IntervalSet.difference(last,ranges));
     }
 
+    /**
+     * @return 块选择集首尾位置,未选择时为点击起止位置
+     */
     public Range<Integer> getRectangleSelectPosition(){
+        int rangeCount = ranges.getRangeCount();
+        if(0<rangeCount&&RECTANGLE_SELECT==mode){
+            return new Range<>(ranges.getStart(0),ranges.getEnd(rangeCount-1)-1);
+        }
         return new Range<>(start,end);
     }
 
     @Override
     public void onBindViewHolder(RecyclerView.ViewHolder holder, int position) {
         super.onBindViewHolder(holder, position);
-        int headersCount = getHeaderViewCount();
-        int footerViewCount = getFooterViewCount();
-        switch (mode) {
-            case SINGLE_SELECT:
-                selectPosition(holder,position,headersCount,footerViewCount,selectPosition + headersCount == position);
-                break;
-            case MULTI_SELECT:
-                selectPosition(holder,position,headersCount,footerViewCount,multiSelectItems.contains(position-headersCount));
-                break;
-            case RECTANGLE_SELECT:
-                int s = Math.min(start + headersCount, end + headersCount);
-                int e = Math.max(start + headersCount, end + headersCount);
-                selectPosition(holder,position,headersCount,footerViewCount,s <= position && e >= position);
-                break;
-            default:
-                selectPosition(holder,position,headersCount,footerViewCount,false);
+        //动态条目以及尾返回NO_POSITION,不参与选择
+        int childPosition = toChildPosition(position);
+        if(RecyclerView.NO_POSITION==childPosition) return;
+        selectPosition(holder,childPosition,isItemSelected(childPosition));
+    }
+
+    @Override
+    public void onBindViewHolder(RecyclerView.ViewHolder holder, int position, List<Object> payloads) {
+        if(payloads.isEmpty()){
+            //完整绑定,由两参数onBindViewHolder更新选中状态
+            super.onBindViewHolder(holder, position, payloads);
+        } else {
+            //只有选中状态变化时,不再向下绑定
+            if(!SelectionPayload.isSelectionOnly(payloads)){
+                super.onBindViewHolder(holder, position, payloads);
+            }
+            int childPosition = toChildPosition(position);
+            if(RecyclerView.NO_POSITION!=childPosition){
+                selectPosition(holder,childPosition,isItemSelected(childPosition));
+            }
         }
     }
 
-    private void selectPosition(RecyclerView.ViewHolder holder,int position,int headerCount,int footerCount,boolean select){
-        int itemCount = getItemCount();
-        if(null!=adapter&&adapter instanceof Selectable&&position>=headerCount&&position<itemCount-footerCount){
+    private void selectPosition(RecyclerView.ViewHolder holder,int childPosition,boolean select){
+        if(null!=adapter&&adapter instanceof Selectable){
             Selectable selectable=(Selectable)adapter;
-            selectable.onSelectItem(holder,position-headerCount,select);
+            selectable.onSelectItem(holder,childPosition,select);
+        }
+    }
+
+    /**
+     * 通知子条目更新,子条目位置转换为全局位置
+     * @param childPosition
+     */
+    private void notifyChildItemChanged(int childPosition){
+        if(INVALID_POSITION!=childPosition&&null!=adapter&&childPosition<adapter.getItemCount()){
+            notifyItemChanged(toGlobalPosition(childPosition), SelectionPayload.INSTANCE);
+        }
+    }
+
+    /**
+     * 通知子条目范围[start,end]更新,中间插入的动态条目一并通知,其绑定不受影响
+     * @param start
+     * @param end
+     */
+    private void notifyChildItemRangeChanged(int start,int end){
+        if(null==adapter) return;
+        start=Math.max(0,start);
+        end=Math.min(end,adapter.getItemCount()-1);
+        if(start<=end){
+            int globalStart = toGlobalPosition(start);
+            notifyItemRangeChanged(globalStart,toGlobalPosition(end)-globalStart+1, SelectionPayload.INSTANCE);
         }
     }
 
@@ -145,56 +514,162 @@ public class SelectAdapter extends RefreshAdapter {
     @Override
     protected boolean onItemClick(View v, int position) {
         super.onItemClick(v, position);
-        int headersCount = getHeaderViewCount();
         switch (mode) {
             case MULTI_SELECT:
-                int lastSize=multiSelectItems.size();
+                //选中个数与位置由区间集维护,不遍历子条目
+                int lastSize=getSelectedCount();
                 selectPosition = start = end = -1;
-                if (multiSelectItems.contains(position)) {
+                boolean selected=isItemSelected(position);
+                if (selected) {
                     lastSize--;
-                    multiSelectItems.remove(Integer.valueOf(position));
-                    notifyItemChanged(position + headersCount);
-                } else if(multiSelectItems.size()<selectMaxCount){
-                    multiSelectItems.add(Integer.valueOf(position));
-                    notifyItemChanged(position + headersCount);
+                    if(isIdSelection()){
+                        setIdSelected(adapter.getItemId(position),false);
+                    }
+                    ranges.remove(position,position+1);
+                    notifyChildItemChanged(position);
+                } else if(getSelectedCount()<selectMaxCount){
+                    if(isIdSelection()){
+                        setIdSelected(adapter.getItemId(position),true);
+                    }
+                    ranges.add(position,position+1);
+                    notifyChildItemChanged(position);
                 }
                 if (null != multiSelectListener) {
-                    multiSelectListener.onMultiSelect(v, multiSelectItems,lastSize,selectMaxCount);
+                    multiSelectListener.onMultiSelect(v, getSelectedList(),lastSize,selectMaxCount);
+                }
+                if (!isIdSelection()) {
+                    dispatchRangeSelect();
                 }
                 break;
             case RECTANGLE_SELECT:
+                IntervalSet lastRanges=new IntervalSet(ranges);
                 if (-1 != start && -1 != end) {
-                    int s = start, e = end;
                     start = end = -1;//重置
-                    notifyItemRangeChanged(Math.min(s + headersCount, e + headersCount), Math.max(s + headersCount, e + headersCount));
+                    ranges.clear();
                 } else if (-1 == start) {
                     start = position;
-                    notifyItemChanged(start + headersCount);
+                    ranges.clear();
+                    ranges.add(start,start+1);
                 } else if (-1 == end) {
                     end = position;
                     if (null != rectangleSelectListener) {
                         rectangleSelectListener.onRectangleSelect(start, end);
                     }
-                    notifyItemRangeChanged(Math.min(start + headersCount, end + headersCount), Math.max(start + headersCount, end + headersCount));
+                    ranges.add(Math.min(start, end), Math.max(start, end)+1);
                 }
+                notifySelectionChanged(IntervalSet.difference(lastRanges,ranges));
                 break;
             case SINGLE_SELECT:
                 start = end = -1;
-                multiSelectItems.clear();
+                selection.clear();
+                ranges.clear();
+                selectionInverted=false;
                 int last=selectPosition;
                 selectPosition = position;
                 if (null != singleSelectListener) {
                     singleSelectListener.onSingleSelect(v, position, last);
                 }
                 if(0<=selectPosition&&INVALID_POSITION!=last){
-                    notifyItemChanged(last + headersCount);//通知上一个取消
+                    notifyChildItemChanged(last);//通知上一个取消
                 }
-                notifyItemChanged(position + headersCount);//本次选中
+                notifyChildItemChanged(position);//本次选中
                 break;
         }
         return CLICK==mode;
     }
 
+    @Override
+    public void childChanged() {
+        //位置全部失效,稳定id多选时需要时再按id重建
+        if(isIdSelection()){
+            rangesStale=true;
+        }
+        super.childChanged();
+    }
+
+    @Override
+    public void childItemRangeInserted(int positionStart, int itemCount) {
+        ranges.insert(positionStart,itemCount);
+        //选中id的条目重新插入时仍为选中
+        updateIdRanges(positionStart,itemCount);
+        super.childItemRangeInserted(positionStart, itemCount);
+    }
+
+    @Override
+    public void childItemRangeRemoved(int positionStart, int itemCount) {
+        ranges.removeRange(positionStart,itemCount);
+        if(!selection.isEmpty()&&isIdSelection()&&!rangesStale){
+            compactIds();
+        }
+        super.childItemRangeRemoved(positionStart, itemCount);
+    }
+
+    @Override
+    public void childItemRangeChanged(int positionStart, int itemCount, Object payload) {
+        //条目可能被替换为其它id
+        updateIdRanges(positionStart,itemCount);
+        super.childItemRangeChanged(positionStart, itemCount, payload);
+    }
+
+    @Override
+    public void childItemRangeMoved(int fromPosition, int toPosition, int itemCount) {
+        ranges.move(fromPosition,toPosition,itemCount);
+        super.childItemRangeMoved(fromPosition, toPosition, itemCount);
+    }
+
+    /**
+     * 稳定id多选时,按id重新判断范围内条目选中位置,只访问变化范围
+     */
+    private void updateIdRanges(int positionStart,int itemCount){
+        if(!isIdSelection()||rangesStale) return;
+        if(selection.isEmpty()){
+            if(selectionInverted){
+                ranges.add(positionStart,positionStart+itemCount);
+            } else {
+                ranges.remove(positionStart,positionStart+itemCount);
+            }
+            return;
+        }
+        for(int position=positionStart;position<positionStart+itemCount;position++){
+            if(isIdSelected(adapter.getItemId(position))){
+                ranges.add(position,position+1);
+            } else {
+                ranges.remove(position,position+1);
+            }
+        }
+    }
+
+    /**
+     * 移除条目的id无法再由位置取得,残留在id集内,残留个数超过应记录个数时按选中位置重建,均摊O(1)
+     * 反转时id集记录未选中条目,按区间集间隙重建
+     */
+    private void compactIds(){
+        int itemCount = adapter.getItemCount();
+        int count=selectionInverted?itemCount-ranges.size():ranges.size();
+        if(selection.size()>2*count+16){
+            selection.clear();
+            int start=0;
+            for(int i=0;i<=ranges.getRangeCount();i++){
+                int end=i<ranges.getRangeCount()?ranges.getStart(i):itemCount;
+                if(selectionInverted){
+                    addIds(start,end);
+                }
+                if(i<ranges.getRangeCount()){
+                    if(!selectionInverted){
+                        addIds(ranges.getStart(i),ranges.getEnd(i));
+                    }
+                    start=ranges.getEnd(i);
+                }
+            }
+        }
+    }
+
+    private void addIds(int start,int end){
+        for(int position=start;position<end;position++){
+            selection.add(adapter.getItemId(position));
+        }
+    }
+
     /*
      * 设置单选选择监听
      *
@@ -222,6 +697,15 @@ public class SelectAdapter extends RefreshAdapter {
         this.rectangleSelectListener = rectangleSelectListener;
     }
 
+    /*
+    * 设置区间选择监听,块选择/无稳定id多选时,选中集变化回调
+    *
+    * @param rangeSelectListener
+    */
+    public void setOnRangeSelectListener(PullToRefreshRecyclerView.OnRangeSelectListener rangeSelectListener) {
+        this.rangeSelectListener = rangeSelectListener;
+    }
+
 
 
 }
@@ -0,0 +1,111 @@
+package com.ldzs.recyclerlibrary.adapter.drag;
+
+import android.support.v7.widget.GridLayoutManager;
+
+/**
+ * 缓存列角标/行角标的SpanSizeLookup
+ * 默认SpanSizeLookup的getSpanGroupIndex每次从0开始计算,为O(n),getSpanIndex缓存由GridLayoutManager在任一数据变化时全部清除
+ * 此处按位置顺序计算并缓存列角标/行角标/行起始位置,同一位置只计算一次,查询O(1)
+ * 缓存只在数据变化位置之后失效,由DynamicAdapter监听自身通知调用invalidateFrom,
+ * span大小在无数据通知情况下改变时,需手动调用invalidateAll
+ */
+public abstract class CachedSpanSizeLookup extends GridLayoutManager.SpanSizeLookup {
+    private static final int DEFAULT_CAPACITY = 64;
+    private int[] spanIndexes = new int[DEFAULT_CAPACITY];
+    private int[] groupIndexes = new int[DEFAULT_CAPACITY];
+    private int[] rowStarts = new int[DEFAULT_CAPACITY];
+    private int validCount;//己缓存位置个数
+    private int spanCount;
+
+    /**
+     * GridLayoutManager在任一数据变化时调用,变化范围己由invalidateFrom处理,此处不清除
+     */
+    @Override
+    public void invalidateSpanIndexCache() {
+    }
+
+    /**
+     * position之后缓存失效
+     *
+     * @param position
+     */
+    public void invalidateFrom(int position) {
+        validCount = Math.max(0, Math.min(validCount, position));
+    }
+
+    public void invalidateAll() {
+        validCount = 0;
+    }
+
+    @Override
+    public int getSpanIndex(int position, int spanCount) {
+        ensure(position, spanCount);
+        return spanIndexes[position];
+    }
+
+    @Override
+    public int getSpanGroupIndex(int adapterPosition, int spanCount) {
+        ensure(adapterPosition, spanCount);
+        return groupIndexes[adapterPosition];
+    }
+
+    /**
+     * position所在行第一个位置
+     *
+     * @param position
+     * @param spanCount
+     * @return
+     */
+    public int getRowStartPosition(int position, int spanCount) {
+        ensure(position, spanCount);
+        return rowStarts[position];
+    }
+
+    /**
+     * 由最后缓存位置顺序计算至position
+     */
+    private void ensure(int position, int spanCount) {
+        if (this.spanCount != spanCount) {
+            this.spanCount = spanCount;
+            validCount = 0;
+        }
+        if (position < validCount) return;
+        ensureCapacity(position + 1);
+        int spanEnd = 0, groupIndex = 0, rowStart = 0;
+        if (0 < validCount) {
+            int last = validCount - 1;
+            spanEnd = spanIndexes[last] + Math.min(spanCount, getSpanSize(last));
+            groupIndex = groupIndexes[last];
+            rowStart = rowStarts[last];
+        }
+        for (int i = validCount; i <= position; i++) {
+            int spanSize = Math.min(spanCount, getSpanSize(i));
+            if (spanEnd + spanSize > spanCount) {
+                //换行
+                spanEnd = 0;
+                groupIndex++;
+                rowStart = i;
+            }
+            spanIndexes[i] = spanEnd;
+            groupIndexes[i] = groupIndex;
+            rowStarts[i] = rowStart;
+            spanEnd += spanSize;
+        }
+        validCount = position + 1;
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (spanIndexes.length < capacity) {
+            int newCapacity = Math.max(capacity, spanIndexes.length * 2);
+            int[] newSpanIndexes = new int[newCapacity];
+            int[] newGroupIndexes = new int[newCapacity];
+            int[] newRowStarts = new int[newCapacity];
+            System.arraycopy(spanIndexes, 0, newSpanIndexes, 0, validCount);
+            System.arraycopy(groupIndexes, 0, newGroupIndexes, 0, validCount);
+            System.arraycopy(rowStarts, 0, newRowStarts, 0, validCount);
+            spanIndexes = newSpanIndexes;
+            groupIndexes = newGroupIndexes;
+            rowStarts = newRowStarts;
+        }
+    }
+}
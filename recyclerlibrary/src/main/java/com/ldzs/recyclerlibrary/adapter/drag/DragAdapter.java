@@ -54,17 +54,13 @@ public class DragAdapter extends DynamicAdapter {
         } else if (endDynamic) {
             itemsDy(oldIndex, newIndex);
         } else {
-            adapter.swapItem(oldIndex - getStartIndex(oldIndex), newIndex - getStartIndex(newIndex));
+            adapter.swapItem(toChildPosition(oldIndex), toChildPosition(newIndex));
         }
     }
 
     private void itemsDy(int oldIndex, int newIndex) {
         int position = findPosition(newIndex);
-        int newViewType = fullItemTypes.get(newIndex);
-        int index = fullItemTypes.indexOfKey(newIndex);
-        fullItemTypes.removeAt(index);
-        fullItemTypes.put(oldIndex, newViewType);
-        itemPositions[position] = oldIndex;//重置角标位置
+        dynamicPositions.setPositionAt(position, oldIndex);//重置角标位置
     }
 
     /**
@@ -76,11 +72,7 @@ public class DragAdapter extends DynamicAdapter {
      */
     private void dysItem(int oldPosition, int newPosition, int position1) {
         //直接更换插入对象到指定位置,装饰对象不用改动
-        int newViewType = fullItemTypes.get(oldPosition);
-        int index = fullItemTypes.indexOfKey(oldPosition);
-        fullItemTypes.removeAt(index);
-        fullItemTypes.put(newPosition, newViewType);
-        itemPositions[position1] = newPosition;//重置角标位置
+        dynamicPositions.setPositionAt(position1, newPosition);//重置角标位置
     }
 
     /**
@@ -90,15 +82,19 @@ public class DragAdapter extends DynamicAdapter {
      * @param newPosition
      */
     private void dysDy(int oldPosition, int newPosition) {
-        int oldViewType = fullItemTypes.get(oldPosition);
-        int newViewType = fullItemTypes.get(newPosition);
-        fullItemTypes.put(oldPosition, newViewType);
-        fullItemTypes.put(newPosition, oldViewType);
+        int oldIndex = findPosition(oldPosition);
+        int newIndex = findPosition(newPosition);
+        int oldViewType = dynamicPositions.viewTypeAt(oldIndex);
+        int newViewType = dynamicPositions.viewTypeAt(newIndex);
+        //交换viewType/绑定数据/id
+        dynamicPositions.swap(oldIndex, newIndex);
         //替换view
         View oldView = fullViews.get(oldViewType);
         View newView = fullViews.get(newViewType);
-        fullViews.put(oldViewType, newView);
-        fullViews.put(newViewType, oldView);
+        if (null != oldView && null != newView) {
+            fullViews.put(oldViewType, newView);
+            fullViews.put(newViewType, oldView);
+        }
     }
 
 }
\ No newline at end of file
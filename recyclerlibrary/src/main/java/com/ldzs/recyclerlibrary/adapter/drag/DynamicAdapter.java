@@ -8,19 +8,18 @@ import android.support.v7.widget.RecyclerView;
 import android.support.v7.widget.StaggeredGridLayoutManager;
 import android.util.Log;
 import android.util.SparseArray;
-import android.util.SparseIntArray;
 import android.view.View;
 import android.view.ViewGroup;
 
 import com.ldzs.recyclerlibrary.adapter.BaseViewAdapter;
 import com.ldzs.recyclerlibrary.adapter.BaseViewAdapter2;
-import com.ldzs.recyclerlibrary.adapter.BaseViewHolder;
+import com.ldzs.recyclerlibrary.adapter.DynamicViewHolder;
+import com.ldzs.recyclerlibrary.callback.DynamicItemBinder;
 import com.ldzs.recyclerlibrary.callback.GridSpanCallback;
 import com.ldzs.recyclerlibrary.callback.OnItemClickListener;
 import com.ldzs.recyclerlibrary.callback.OnItemLongClickListener;
+import com.ldzs.recyclerlibrary.callback.SlotBinder;
 
-import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.List;
 
 /**
@@ -47,14 +46,50 @@ import java.util.List;
 public class DynamicAdapter extends RecyclerView.Adapter<RecyclerView.ViewHolder> {
     private static final String TAG = "DynamicAdapter";
     protected final int START_POSITION = 1024;//超出其他Header/Footer范围,避免混乱
-    protected final SparseIntArray fullItemTypes;
+    protected final int TYPE_SLOT = START_POSITION - 1;//规则插入条目共用类型
+    //装饰条目id命名空间,高4位区分条目种类,低位为较小序号;子条目id经混合后散布于整个long范围,不截断
+    protected static final int ID_TYPE_SHIFT = 60;
+    protected static final long ID_TYPE_DYNAMIC = 1L << ID_TYPE_SHIFT;
+    protected static final long ID_TYPE_SLOT = 2L << ID_TYPE_SHIFT;
+    protected static final long ID_TYPE_FOOTER = 3L << ID_TYPE_SHIFT;
+    protected static final long ID_TYPE_POSITION = 4L << ID_TYPE_SHIFT;//子Adapter无稳定id时,退化为位置id
+    protected final DynamicPositionIndex dynamicPositions;
     protected final SparseArray<View> fullViews;
+    protected final SparseArray<DynamicItemBinder> itemBinders;//binder方式添加条目,key为共用viewType
     private int headerViewCount;
-    protected int[] itemPositions;
     protected RecyclerView.Adapter adapter;
     private int itemViewCount;
     private OnItemLongClickListener longItemListener;
     private OnItemClickListener itemClickListener;
+    private SlotRule slotRule;
+    private SlotBinder slotBinder;
+    private CachedSpanSizeLookup spanSizeLookup;//GridLayoutManager时有效
+    private final RecyclerView.AdapterDataObserver spanCacheObserver=new RecyclerView.AdapterDataObserver() {
+        @Override
+        public void onChanged() {
+            spanSizeLookup.invalidateAll();
+        }
+
+        @Override
+        public void onItemRangeChanged(int positionStart, int itemCount) {
+            spanSizeLookup.invalidateFrom(positionStart);
+        }
+
+        @Override
+        public void onItemRangeInserted(int positionStart, int itemCount) {
+            spanSizeLookup.invalidateFrom(positionStart);
+        }
+
+        @Override
+        public void onItemRangeRemoved(int positionStart, int itemCount) {
+            spanSizeLookup.invalidateFrom(positionStart);
+        }
+
+        @Override
+        public void onItemRangeMoved(int fromPosition, int toPosition, int itemCount) {
+            spanSizeLookup.invalidateFrom(Math.min(fromPosition, toPosition));
+        }
+    };
 
 
     /**
@@ -62,13 +97,17 @@ public class DynamicAdapter extends RecyclerView.Adapter<RecyclerView.ViewHolder
      */
     public DynamicAdapter(RecyclerView.Adapter adapter) {
         this.adapter = adapter;
-        itemPositions = new int[0];
-        fullItemTypes = new SparseIntArray();
+        dynamicPositions = new DynamicPositionIndex();
         fullViews = new SparseArray<>();
+        itemBinders = new SparseArray<>();
     }
 
     public void setAdapter(RecyclerView.Adapter adapter){
         this.adapter=adapter;
+        //未绑定RecyclerView之前,稳定id跟随子Adapter,绑定后不可更改,由getItemId退化为位置id
+        if(null!=adapter&&!hasObservers()){
+            setHasStableIds(adapter.hasStableIds());
+        }
         notifyDataSetChanged();
     }
 
@@ -77,36 +116,194 @@ public class DynamicAdapter extends RecyclerView.Adapter<RecyclerView.ViewHolder
     }
 
     /**
-     * 条目范围插入
+     * 设置规则插入条目,如每8个子条目插入一个广告位,位置由规则计算,不需要逐个添加动态条目
+     * @param rule 为null时移除规则
+     * @param binder 规则条目创建/绑定回调
+     */
+    public void setSlotRule(SlotRule rule,SlotBinder binder){
+        if(null!=rule&&null==binder){
+            throw new NullPointerException("slot binder is null!");
+        }
+        this.slotRule=rule;
+        this.slotBinder=binder;
+        notifyDataSetChanged();
+    }
+
+    public SlotRule getSlotRule(){
+        return slotRule;
+    }
+
+    /**
+     * 子Adapter整体刷新,由数据观察者调用
+     */
+    public void childChanged() {
+        notifyDataSetChanged();
+    }
+
+    /**
+     * 子Adapter条目范围插入,由数据观察者调用
+     * 有规则条目时,规则条目位置固定,插入位置之后的子条目与规则条目关系整体改变,插入后重新绑定之后的条目
+     * 加载更多时,插入位置为末尾,只会通知插入
+     * @param positionStart
+     * @param itemCount
+     */
+    public void childItemRangeInserted(int positionStart, int itemCount) {
+        int childCount = null==adapter?0:adapter.getItemCount();
+        int lastChildCount = childCount - itemCount;
+        if(null==slotRule){
+            itemRangeInsert(insertToGlobalPosition(positionStart,lastChildCount),itemCount);
+        } else {
+            int innerStart = slotRule.toInnerPosition(positionStart);
+            int lastInnerCount = slotRule.getItemCount(lastChildCount);
+            int innerCount = slotRule.getItemCount(childCount) - lastInnerCount;
+            int globalStart = insertToGlobalPosition(innerStart,lastInnerCount);
+            itemRangeInsert(globalStart,innerCount);
+            if(positionStart<lastChildCount){
+                notifyTailRangeChanged(globalStart+innerCount);
+            }
+        }
+    }
+
+    /**
+     * 插入内部位置对应的全局位置
+     * 末尾追加时,插入到最后一个子条目之后,紧随其后的动态条目(如addDynamicView添加到末尾的条目)仍保持在末尾
+     * 子条目为空时无法区分头/尾,所有动态条目排在插入条目之前
+     * @param innerStart
+     * @param lastInnerCount 插入前内部条目个数
+     * @return
+     */
+    private int insertToGlobalPosition(int innerStart, int lastInnerCount){
+        int position;
+        if(0<innerStart&&innerStart==lastInnerCount){
+            position=innerToGlobalPosition(innerStart-1)+1;
+        } else {
+            position=innerToGlobalPosition(innerStart);
+        }
+        return position;
+    }
+
+    /**
+     * 子Adapter条目范围移除,由数据观察者调用
+     * @param positionStart
+     * @param itemCount
+     */
+    public void childItemRangeRemoved(int positionStart, int itemCount) {
+        if(null==slotRule){
+            itemRangeRemoved(toGlobalPosition(positionStart),itemCount);
+        } else {
+            int childCount = null==adapter?0:adapter.getItemCount();
+            int innerStart = slotRule.toInnerPosition(positionStart);
+            int innerCount = slotRule.getItemCount(childCount + itemCount) - slotRule.getItemCount(childCount);
+            int globalStart = innerToGlobalPosition(innerStart);
+            itemRangeRemoved(globalStart,innerCount);
+            if(positionStart<childCount){
+                notifyTailRangeChanged(globalStart);
+            }
+        }
+    }
+
+    /**
+     * 子Adapter条目范围更新,由数据观察者调用
+     * 按动态条目/规则条目拆分为连续全局范围,每段只通知一次,不会更新到范围内的动态条目
+     * like: 动态条目 3 6, 子条目1~5更新 -> (2,1) (4,2) (7,2)
      *
      * @param positionStart
      * @param itemCount
+     * @param payload
      */
-    public void itemRangeInsert(int positionStart, int itemCount) {
-        //重置所有移除范围内的动态条信息
-        ArrayList<Integer> itemPositionLists = new ArrayList<>();
-        SparseIntArray newFullItems=new SparseIntArray();
-        int length = itemPositions.length;
-        for(int i=0;i<length;i++){
-            int position = itemPositions[i];
-            int newPosition = position;
-            //范围外条目,整体后退
-            if(positionStart<=position){
-                newPosition=position+itemCount;
+    public void childItemRangeChanged(int positionStart, int itemCount, Object payload) {
+        int childPosition = positionStart;
+        int remainCount = itemCount;
+        int size = dynamicPositions.size();
+        while (0 < remainCount) {
+            int innerPosition = null == slotRule ? childPosition : slotRule.toInnerPosition(childPosition);
+            int count = remainCount;
+            if (null != slotRule) {
+                count = Math.min(count, slotRule.nextSlotPosition(innerPosition) - innerPosition);
+            }
+            int position = innerToGlobalPosition(innerPosition);
+            int index = dynamicPositions.countBefore(position);
+            if (index < size) {
+                count = Math.min(count, dynamicPositions.positionAt(index) - position);
+            }
+            notifyItemRangeChanged(position, count, payload);
+            childPosition += count;
+            remainCount -= count;
+        }
+    }
+
+    /**
+     * 子Adapter条目移动,由数据观察者调用
+     * 动态条目/规则条目位置固定,子条目越过它们时,先移动子条目,再将范围内固定条目逐个移回原位
+     * 多条目移动拆分为逐个移动
+     *
+     * @param fromPosition
+     * @param toPosition
+     * @param itemCount
+     */
+    public void childItemRangeMoved(int fromPosition, int toPosition, int itemCount) {
+        for (int i = 0; i < itemCount; i++) {
+            if (fromPosition < toPosition) {
+                //块内首个条目依次移到块尾
+                childItemMoved(fromPosition, toPosition + itemCount - 1);
+            } else {
+                childItemMoved(fromPosition + i, toPosition + i);
             }
-            newFullItems.put(newPosition,fullItemTypes.get(position));
-            itemPositionLists.add(newPosition);
         }
-        fullItemTypes.clear();
-        for(int i=0;i<newFullItems.size();i++){
-            fullItemTypes.append(newFullItems.keyAt(i),newFullItems.valueAt(i));
+    }
+
+    private void childItemMoved(int fromPosition, int toPosition) {
+        if (fromPosition == toPosition) return;
+        int from = toGlobalPosition(fromPosition);
+        int to = toGlobalPosition(toPosition);
+        notifyItemMoved(from, to);
+        //移动后,范围内固定条目向移出方向偏移了一位,移回原位
+        if (from < to) {
+            //从后向前,避免相邻固定条目互相交换
+            for (int position = to; position > from; position--) {
+                if (isFixedItem(position)) {
+                    notifyItemMoved(position - 1, position);
+                }
+            }
+        } else {
+            for (int position = to; position < from; position++) {
+                if (isFixedItem(position)) {
+                    notifyItemMoved(position + 1, position);
+                }
+            }
         }
-        int size = itemPositionLists.size();
-//        Log.e(TAG,"position:"+Arrays.toString(itemPositions)+" itemPositions:"+itemPositionLists+" positionStart:"+positionStart);
-        itemPositions = new int[size];
-        for (int i = 0; i < size; i++) {
-            itemPositions[i] = itemPositionLists.get(i);
+    }
+
+    /**
+     * 位置固定条目,即动态条目与规则条目
+     *
+     * @param position
+     * @return
+     */
+    private boolean isFixedItem(int position) {
+        return isDynamicItem(position) || isSlotItem(position);
+    }
+
+    /**
+     * 通知position之后所有条目更新,RecyclerView只会重新绑定己显示条目
+     * @param positionStart
+     */
+    private void notifyTailRangeChanged(int positionStart){
+        int itemCount = getRealItemCount() - positionStart;
+        if(0<itemCount){
+            notifyItemRangeChanged(positionStart,itemCount);
         }
+    }
+
+    /**
+     * 条目范围插入
+     * 插入位置之后的动态条目整体后移,只需偏移一次索引
+     *
+     * @param positionStart
+     * @param itemCount
+     */
+    public void itemRangeInsert(int positionStart, int itemCount) {
+        dynamicPositions.offset(positionStart, itemCount);
         notifyItemRangeInserted(positionStart, itemCount);
     }
 
@@ -117,44 +314,34 @@ public class DynamicAdapter extends RecyclerView.Adapter<RecyclerView.ViewHolder
      * @param removeCount
      */
     public void itemRangeGlobalRemoved(int positionStart, int removeCount) {
-        //重置所有移除范围内的动态条信息
-        int startIndex = getStartIndex(positionStart);
-        positionStart+=startIndex;
-        //计算出最后移除范围
-        int index=0;
-        int positionEnd=positionStart;
-        while(index<removeCount){
-            if(!isDynamicItem(positionEnd++))index++;
+        positionStart=toGlobalPosition(positionStart);
+        //计算出最后移除范围,跳过范围内的动态条目
+        int startIndex = dynamicPositions.countBefore(positionStart);
+        int endIndex = startIndex;
+        int positionEnd = positionStart;
+        int remainCount = removeCount;
+        int size = dynamicPositions.size();
+        while(0<remainCount){
+            int nextPosition = endIndex<size ? dynamicPositions.positionAt(endIndex) : Integer.MAX_VALUE;
+            int count = Math.min(remainCount, nextPosition - positionEnd);
+            positionEnd += count;
+            remainCount -= count;
+            if(0<remainCount){
+                positionEnd = nextPosition + 1;
+                endIndex++;
+            }
         }
         removeCount=positionEnd-positionStart;
-
-        List<Integer> positionList=new ArrayList<>();
-        for(int i=0;i<itemPositions.length;positionList.add(itemPositions[i++]));
-
-        for(int position=positionStart;position<positionEnd;position++){
-            if(isDynamicItem(position)) {
-                int value = fullItemTypes.valueAt(startIndex);
-                fullViews.remove(value);
-                fullItemTypes.removeAt(startIndex);
-                positionList.remove(startIndex);
-            }
+        //移除范围内动态条目
+        for(int i=startIndex;i<endIndex;i++){
+            fullViews.remove(dynamicPositions.viewTypeAt(i));
         }
-//        Log.e(TAG,"array:"+positionList);
-        int size = fullItemTypes.size();
-        for(int i=startIndex;i<size;i++){
-            Integer position = positionList.get(i);
-            int newPosition=position-removeCount;
-            int value = fullItemTypes.get(position);
-            fullItemTypes.delete(position);
-            fullItemTypes.put(newPosition,value);
-            positionList.set(i,newPosition);
-        }
-        itemPositions=new int[size];
-        for(int i=0;i<size;itemPositions[i]=positionList.get(i),i++);
+        dynamicPositions.removeRange(startIndex, endIndex);
+        dynamicPositions.offsetFrom(startIndex, -removeCount);
+        updateHeaderViewCount();
         if(0<removeCount){
             notifyItemRangeRemoved(positionStart,removeCount);
         }
-//        Log.e(TAG,"position:"+Arrays.toString(itemPositions)+" positionStart:"+positionStart+" positionEnd:"+positionEnd+" startIndex:"+startIndex+" realCount:"+getRealItemCount()+" itemCount:"+removeCount);
     }
 
     /**
@@ -177,87 +364,32 @@ public class DynamicAdapter extends RecyclerView.Adapter<RecyclerView.ViewHolder
      *  11 12 13
      *
      *  难度最大的地方在于.动态移除.以及动态插件条目信息更新
-     *  1:先计算出,当前移除位置,到指定需要移除位置条目数的最终位置.上面示例是从从0开始,移除8个,那么最终位置为11
-     *  2:范围移除.但是中间有自定义条目插入.所以其中移除还是分段移除.并且更新信息.这里需要算一步,更新信息,再删一步.
-     *      如(1,2,3)这一段.起始位置为1(--0--),需要删除3个,会记录删除偏移量3,然后检测到(--4--),动态更新(--4--)条目信息.
-     *      将其往前移3,删除1-3元素后,(--4--)的起始变为1,后续逻辑相同.
-     *  3:任何范围外的超出的,都会直接减去最终的startOffset值,形成插入信息一致更新.
-     *
-     *  为实现此效果.中间修改代码很多次.主要是没想通具体逻辑.就是第二步的逻辑.只有达到此效果.才是真正的动态化.
+     *  1:从起始位置开始,找到下一个动态条目,两者之间为一段需要移除的用户条目.
+     *  2:移除该段,并将此动态条目以及之后所有动态条目前移该段长度,树状索引内只需一次偏移.
+     *      如(1,2,3)这一段.起始位置为1(--0--),需要删除3个,(--4--)及之后条目前移3,(--4--)的起始变为1,后续逻辑相同.
+     *  3:直到移除够itemCount个用户条目,范围外的动态条目己随每一段偏移一并更新.
      * @param positionStart
      * @param itemCount
      */
     public void itemRangeRemoved(int positionStart, int itemCount) {
-        //重置所有移除范围内的动态条信息
-        int startIndex = getStartIndex(positionStart);
-        //计算出最后移除范围
-        int index=0;
-        int positionEnd=positionStart;
-        while(index<itemCount){
-            if(!isDynamicItem(positionEnd++))index++;
-        }
-//        Log.e(TAG,"itemCount:"+itemCount+" adapterCount:"+adapter.getItemCount()+" start:"+positionStart+" end:"+positionEnd);
-
-        int length = itemPositions.length;
-        final int[] finalArray=new int[length];
-        System.arraycopy(itemPositions,0,finalArray,0,length);
-
-        int start=0,startOffset=0,totalOffset=0;
-        for(int position=positionStart;position<positionEnd;position++){
-            boolean isDefaultItem = RecyclerView.NO_POSITION == findPosition(finalArray, position);
-            if(isDefaultItem) {
-                if(0==startOffset) start=position-totalOffset;
-                startOffset++;
-                totalOffset++;
+        int index = dynamicPositions.countBefore(positionStart);
+        int size = dynamicPositions.size();
+        int start = positionStart;
+        int remainCount = itemCount;
+        while(0<remainCount){
+            int nextPosition = index<size ? dynamicPositions.positionAt(index) : Integer.MAX_VALUE;
+            int count = Math.min(remainCount, nextPosition - start);
+            if(0<count){
+                dynamicPositions.offsetFrom(index, -count);
+                notifyItemRangeRemoved(start,count);
+                remainCount -= count;
             }
-            //判断为插入条目,或者最后一个时,执行偏移运算
-            if(!isDefaultItem||positionEnd-1==position){
-                for(int i=startIndex;i<length;i++){
-                    int itemPosition = itemPositions[i];
-                    itemPositions[i]-=startOffset;
-                    int value = fullItemTypes.get(itemPosition);
-                    fullItemTypes.delete(itemPosition);
-                    fullItemTypes.put(itemPositions[i],value);
-                }
-//                Log.e(TAG,"start:"+start+" offset:"+startOffset+" index:"+startIndex);
-                notifyItemRangeRemoved(start,startOffset);
-                startIndex++;
-                startOffset=0;
+            if(0<remainCount){
+                //跳过当前动态条目,其己前移至start位置
+                start++;
+                index++;
             }
         }
-//        Log.e(TAG,"position:"+Arrays.toString(itemPositions)+" positionStart:"+positionStart+" startIndex:"+startIndex);
-        //之前实现方式,存在不足,但思考了很久.不舍得删了.
-        //这里运算比较复杂,需要时时更新所有ItemPosition以及fullItemType信息.整个动态化逻辑里,这里最复杂.
-//        for(int i=0;i<length;i++){
-//            final int position = itemPositions[i];
-//            if(position>positionStart&&position<=positionEnd){
-//                //置换ItemPosition位置
-//                int deleteStart=-1,deleteCount=0;
-//                for(index=start;index<position;index++){
-//                    //移除中间条目.这里不能采用rangeRemove,因为条目插入中间.采用这个方法.会直接导致中间条目无法保留
-//                    if(RecyclerView.NO_POSITION==findPosition(finalArray,index)){
-//                        if(-1==deleteStart) deleteStart=index-startOffset;
-//                        deleteCount++;
-//                        startOffset++;
-//                    }
-//                }
-//                start=position;
-//                //范围内条目,整体前进
-//                int newPosition=position-startOffset;
-//                int value = fullItemTypes.get(position);
-//                fullItemTypes.delete(position);
-//                fullItemTypes.put(newPosition,value);
-//                itemPositions[i]=newPosition;
-//                notifyItemRangeRemoved(deleteStart,deleteCount);
-//            } else if(position>positionEnd){
-//                //大于移除范围条目
-//                int newPosition=position-startOffset;
-//                int value = fullItemTypes.get(position);
-//                fullItemTypes.delete(position);
-//                fullItemTypes.put(newPosition,value);
-//                itemPositions[i]=newPosition;
-//            }
-//        }
     }
 
 
@@ -286,37 +418,75 @@ public class DynamicAdapter extends RecyclerView.Adapter<RecyclerView.ViewHolder
      */
     public void addDynamicView(View view, int position) {
         if (RecyclerView.NO_POSITION != findPosition(position)) return;//己存在添加位置,则不添加
-        int length = itemPositions.length;
-        int[] newPositions = new int[length + 1];
-        newPositions[length] = position;
-        System.arraycopy(itemPositions, 0, newPositions, 0, itemPositions.length);
-        Arrays.sort(newPositions);
-        itemPositions = newPositions;
         int viewType = START_POSITION + itemViewCount++;
-        fullItemTypes.put(position, viewType);
+        dynamicPositions.insert(position, viewType);
         fullViews.put(viewType, view);
 
         updateHeaderViewCount();
+        notifyDynamicItemInserted(position);
+    }
 
+    /**
+     * 以数据方式添加一个动态条目到指定位置
+     * 同一binder添加的条目共用一个viewType,由RecycledViewPool复用,只在显示时创建/绑定,
+     * 大量插入条目(如推广位)时,内存只与屏幕显示条目相关,而非添加条目个数
+     *
+     * @param binder 条目创建/绑定回调
+     * @param item 条目绑定数据
+     * @param position
+     */
+    public <E> void addDynamicItem(DynamicItemBinder<?, E> binder, E item, int position) {
+        if (RecyclerView.NO_POSITION != findPosition(position)) return;//己存在添加位置,则不添加
+        int index = itemBinders.indexOfValue(binder);
+        int viewType;
+        if (0 > index) {
+            viewType = START_POSITION + itemViewCount++;
+            itemBinders.put(viewType, binder);
+        } else {
+            viewType = itemBinders.keyAt(index);
+        }
+        dynamicPositions.insert(position, viewType, item);
 
-        //当只有一个时,通知插入,这里有一个问题,暂时未找到原因:如果谁清楚,请帮助解决一下,所以不用notifyItemInserted改用notifyDataSetChanged,性能差一点,但不会报错.
-        // java.lang.IllegalArgumentException: Called removeDetachedView withBinary a view which is not flagged as tmp detached.ViewHolder{3c6be8ee position=17 id=-1, oldPos=-1, pLpos:-1}
-//        notifyItemInserted(position);
-        notifyDataSetChanged();
+        updateHeaderViewCount();
+        notifyDynamicItemInserted(position);
+    }
+
+    /**
+     * 更新指定位置动态条目绑定数据
+     *
+     * @param position
+     * @param item
+     */
+    public void setDynamicItem(int position, Object item) {
+        int index = findPosition(position);
+        if (RecyclerView.NO_POSITION != index) {
+            dynamicPositions.setItemAt(index, item);
+            notifyItemChanged(position);
+        }
+    }
+
+    /**
+     * 通知动态条目插入
+     * 动态条目位置为绝对位置,插入后,之后的动态条目位置不变,而其间的子条目整体后移一位.
+     * 所以先通知插入,再将之后每个动态条目移回原位置,其越过的为该段最后一个子条目
+     *
+     * @param position
+     */
+    private void notifyDynamicItemInserted(int position) {
+        notifyItemInserted(position);
+        int size = dynamicPositions.size();
+        for (int i = dynamicPositions.countAtOrBefore(position); i < size; i++) {
+            int dynamicPosition = dynamicPositions.positionAt(i);
+            notifyItemMoved(dynamicPosition + 1, dynamicPosition);
+        }
     }
 
     /**
      * update header view count
      */
     private void updateHeaderViewCount() {
-        int length;
-        headerViewCount=0;
-        length=itemPositions.length;
-        int index=0;
-        while(index<length&&index==itemPositions[index]){
-            index++;
-            headerViewCount++;
-        }
+        //排在第0个子条目之前的动态条目,即为头
+        headerViewCount=dynamicPositions.countInsertedBefore(0);
     }
 
     /**
@@ -336,9 +506,9 @@ public class DynamicAdapter extends RecyclerView.Adapter<RecyclerView.ViewHolder
         int index = fullViews.indexOfValue(view);
         if(-1<index){
             int viewType = fullViews.keyAt(index);
-            index=fullItemTypes.indexOfValue(viewType);
+            index=dynamicPositions.indexOfViewType(viewType);
             if(-1<index){
-                int position = fullItemTypes.keyAt(index);
+                int position = dynamicPositions.positionAt(index);
                 removeDynamicView(position);
             }
         }
@@ -355,28 +525,12 @@ public class DynamicAdapter extends RecyclerView.Adapter<RecyclerView.ViewHolder
      * @param removePosition
      */
     public void removeDynamicView(int removePosition) {
-        if (isDynamicItem(removePosition)) {
-            int itemType = getItemViewType(removePosition);
-            fullViews.delete(itemType);
-            int length = itemPositions.length;
-            int[] newPositions = new int[length - 1];
-            SparseIntArray newFullItems=new SparseIntArray();
-            for (int i = 0, k = 0; i < length; i++) {
-                int position = itemPositions[i];
-                if (removePosition != position) {
-                    int newPosition=position;
-                    if(removePosition<position){
-                        newPosition=position-1;
-                    }
-                    newPositions[k++] = newPosition;
-                    newFullItems.put(newPosition,fullItemTypes.get(position));
-                }
-            }
-            fullItemTypes.clear();
-            for(int i=0;i<newFullItems.size();i++){
-                fullItemTypes.append(newFullItems.keyAt(i),newFullItems.valueAt(i));
-            }
-            itemPositions = newPositions;
+        int index = findPosition(removePosition);
+        if (RecyclerView.NO_POSITION != index) {
+            fullViews.delete(dynamicPositions.viewTypeAt(index));
+            dynamicPositions.removeAt(index);
+            //之后的动态条目整体前移一位
+            dynamicPositions.offsetFrom(index, -1);
             updateHeaderViewCount();
             notifyItemRemoved(removePosition);
         }
@@ -388,16 +542,42 @@ public class DynamicAdapter extends RecyclerView.Adapter<RecyclerView.ViewHolder
         RecyclerView.LayoutManager manager = recyclerView.getLayoutManager();
         if (manager instanceof GridLayoutManager) {
             final GridLayoutManager gridLayoutManager = ((GridLayoutManager) manager);
-            gridLayoutManager.setSpanSizeLookup(new GridLayoutManager.SpanSizeLookup() {
+            if(null!=spanSizeLookup){
+                unregisterAdapterDataObserver(spanCacheObserver);
+            }
+            spanSizeLookup=new CachedSpanSizeLookup() {
                 @Override
                 public int getSpanSize(int position) {
                     int spanCount=1;
-                    if(null!=adapter&&adapter instanceof GridSpanCallback){
-                        spanCount=((GridSpanCallback)adapter).getSpanSize(gridLayoutManager,position-getHeaderViewCount());
+                    if(isDynamicItem(position)||isSlotItem(position)||isFullItem(position)){
+                        spanCount=gridLayoutManager.getSpanCount();
+                    } else if(null!=adapter&&adapter instanceof GridSpanCallback){
+                        spanCount=((GridSpanCallback)adapter).getSpanSize(gridLayoutManager,toChildPosition(position));
                     }
-                    return isDynamicItem(position)||isFullItem(position) ? gridLayoutManager.getSpanCount() : spanCount;
+                    return spanCount;
                 }
-            });
+            };
+            gridLayoutManager.setSpanSizeLookup(spanSizeLookup);
+            //监听自身通知,只失效变化位置之后的span缓存
+            registerAdapterDataObserver(spanCacheObserver);
+        }
+    }
+
+    @Override
+    public void onDetachedFromRecyclerView(RecyclerView recyclerView) {
+        super.onDetachedFromRecyclerView(recyclerView);
+        if(null!=spanSizeLookup){
+            unregisterAdapterDataObserver(spanCacheObserver);
+            spanSizeLookup=null;
+        }
+    }
+
+    /**
+     * 子条目span大小在无数据通知情况下改变时(如GridSpanCallback规则变化),调用此方法清除span缓存
+     */
+    public void invalidateSpanCache(){
+        if(null!=spanSizeLookup){
+            spanSizeLookup.invalidateAll();
         }
     }
 
@@ -406,7 +586,7 @@ public class DynamicAdapter extends RecyclerView.Adapter<RecyclerView.ViewHolder
         super.onViewAttachedToWindow(holder);
         int position = holder.getLayoutPosition();
         ViewGroup.LayoutParams layoutParams = holder.itemView.getLayoutParams();
-        if (null!=layoutParams && layoutParams instanceof StaggeredGridLayoutManager.LayoutParams && ((isDynamicItem(position))||isFullItem(position))) {
+        if (null!=layoutParams && layoutParams instanceof StaggeredGridLayoutManager.LayoutParams && (isDynamicItem(position)||isSlotItem(position)||isFullItem(position))) {
             StaggeredGridLayoutManager.LayoutParams p = (StaggeredGridLayoutManager.LayoutParams) layoutParams;
             p.setFullSpan(true);
         }
@@ -432,12 +612,27 @@ public class DynamicAdapter extends RecyclerView.Adapter<RecyclerView.ViewHolder
         return RecyclerView.NO_POSITION != findPosition(position);
     }
 
+    /**
+     * 判断当前位置是否为规则插入条目
+     *
+     * @param position
+     * @return
+     */
+    public boolean isSlotItem(int position) {
+        return null != slotRule && 0 <= position && !isDynamicItem(position) && slotRule.isSlot(position - dynamicPositions.countBefore(position));
+    }
+
     @Override
     public RecyclerView.ViewHolder onCreateViewHolder(ViewGroup parent, int viewType) {
         RecyclerView.ViewHolder holder = null;
         View view = fullViews.get(viewType);
+        DynamicItemBinder binder = itemBinders.get(viewType);
         if (null != view) {
-            holder = new BaseViewHolder(view);
+            holder = new DynamicViewHolder(parent.getContext());
+        } else if (null != binder) {
+            holder = binder.onCreateViewHolder(parent);
+        } else if (TYPE_SLOT == viewType && null != slotBinder) {
+            holder = slotBinder.onCreateSlotViewHolder(parent);
         } else if (null != adapter) {
             holder = adapter.onCreateViewHolder(parent, viewType);
         }
@@ -446,20 +641,43 @@ public class DynamicAdapter extends RecyclerView.Adapter<RecyclerView.ViewHolder
 
     @Override
     public void onBindViewHolder(final RecyclerView.ViewHolder holder, final int position) {
-        if (!isDynamicItem(position) && null != adapter) {
+        int index = findPosition(position);
+        if (RecyclerView.NO_POSITION != index) {
+            int viewType = dynamicPositions.viewTypeAt(index);
+            DynamicItemBinder binder = itemBinders.get(viewType);
+            if (null != binder) {
+                binder.onBindViewHolder(holder, dynamicPositions.itemAt(index));
+            } else if (holder instanceof DynamicViewHolder) {
+                ((DynamicViewHolder) holder).attach(fullViews.get(viewType));
+            }
+        } else if (isSlotItem(position)) {
+            slotBinder.onBindSlotViewHolder(holder, slotRule.getSlotIndex(position - dynamicPositions.countBefore(position)));
+        } else if (null != adapter) {
             holder.itemView.setOnClickListener(new View.OnClickListener() {
                 @Override
                 public void onClick(View v) {
-                    //这里看起来很矛盾,其实是必然的设计,因为position可以往下减为真实的子Adapter的位置,但是往上,无法逆反,为实现drag条目转换功能,所以只能传递真实位置回具体条目
+                    //子类使用子条目位置,外部监听仍传递全局位置,需要时可由toChildPosition/toGlobalPosition互相转换
                     int itemPosition = holder.getAdapterPosition();
-                    int realPosition = itemPosition - getStartIndex(itemPosition);
-                    if (onItemClick(v, realPosition) && null != itemClickListener) {
+                    int realPosition = toChildPosition(itemPosition);
+                    if (RecyclerView.NO_POSITION != realPosition && onItemClick(v, realPosition) && null != itemClickListener) {
                         itemClickListener.onItemClick(v, itemPosition);
                     }
                 }
             });
-            int startIndex = getStartIndex(position);
-            adapter.onBindViewHolder(holder, position - startIndex);
+            adapter.onBindViewHolder(holder, toChildPosition(position));
+        }
+    }
+
+    /**
+     * 局部更新,子条目payload原样传递给子Adapter,动态条目/规则条目完整绑定
+     */
+    @Override
+    public void onBindViewHolder(RecyclerView.ViewHolder holder, int position, List<Object> payloads) {
+        if (payloads.isEmpty() || isDynamicItem(position) || isSlotItem(position) || null == adapter) {
+            onBindViewHolder(holder, position);
+        } else {
+            //点击事件已在完整绑定时设置
+            adapter.onBindViewHolder(holder, toChildPosition(position), payloads);
         }
     }
 
@@ -468,10 +686,11 @@ public class DynamicAdapter extends RecyclerView.Adapter<RecyclerView.ViewHolder
         int viewType = 0;
         int index = findPosition(position);
         if (RecyclerView.NO_POSITION != index) {
-            viewType = fullItemTypes.get(position);
+            viewType = dynamicPositions.viewTypeAt(index);
+        } else if (isSlotItem(position)) {
+            viewType = TYPE_SLOT;
         } else if (null != adapter) {
-            int startIndex = getStartIndex(position);
-            viewType = adapter.getItemViewType(position - startIndex);
+            viewType = adapter.getItemViewType(toChildPosition(position));
         }
         return viewType;
     }
@@ -493,11 +712,11 @@ public class DynamicAdapter extends RecyclerView.Adapter<RecyclerView.ViewHolder
 
     @Override
     public int getItemCount() {
-        int itemCount = fullViews.size();
+        int itemCount = dynamicPositions.size();
         if (null != adapter) {
-            itemCount += adapter.getItemCount();
+            int childCount = adapter.getItemCount();
+            itemCount += null == slotRule ? childCount : slotRule.getItemCount(childCount);
         }
-//        Log.e(TAG,"Dynamic itemCount:"+itemCount+" fullView:"+fullViews.size());
         return itemCount;
     }
 
@@ -513,68 +732,132 @@ public class DynamicAdapter extends RecyclerView.Adapter<RecyclerView.ViewHolder
 
 
     /**
-     * 使用二分查找法,根据firstVisiblePosition找到SelectPositions中的位置
+     * 根据position找到其之前的动态条目个数,若position为动态条目,则包含与其相连的所有动态条目
      *
      * @return
      */
     public int getStartIndex(int position) {
-        int[] positions = itemPositions;
-        int start = 0, end = positions.length - 1, result = -1;
-        while (start <= end) {
-            int middle = (start + end) / 2;
-            if (position == positions[middle]) {
-                result = middle + 1;
-                break;
-            } else if (position < positions[middle]) {
-                end = middle - 1;
-            } else {
-                start = middle + 1;
-            }
-        }
-        if(-1 == result){
-            result=start;
+        int index = dynamicPositions.indexOf(position);
+        int result;
+        if (RecyclerView.NO_POSITION == index) {
+            result = dynamicPositions.countBefore(position);
         } else {
-            start=result-1;
-            end = positions.length - 1;
-            //当position为0时,插入条目为0,1 这时候应该取得2
-            while(start<end&&positions[start]+1==positions[start+1]){
-                start++;
-                result++;
-            }
+            //当position为0时,插入条目为0,1 这时候应该取得2,相连的动态条目之前的子条目个数相同,直接按子条目位置统计
+            result = dynamicPositions.countInsertedBefore(position - index);
         }
         return result;
     }
 
-    public int findPosition(int position) {
-        return findPosition(itemPositions,position);
+    /**
+     * 全局位置转换为子Adapter条目位置,O(log n)
+     *
+     * @param position 全局位置
+     * @return 子条目位置, 动态条目返回NO_POSITION
+     */
+    public int toChildPosition(int position) {
+        int childPosition = RecyclerView.NO_POSITION;
+        if (0 <= position && !isDynamicItem(position)) {
+            childPosition = position - dynamicPositions.countBefore(position);
+            if (null != slotRule) {
+                childPosition = slotRule.toChildPosition(childPosition);
+            }
+        }
+        return childPosition;
+    }
+
+    /**
+     * 子Adapter条目位置转换为全局位置,O(log n)
+     * 如1,9位置各插入一个条目,子条目8的全局位置为10
+     *
+     * @param childPosition 子条目位置
+     * @return 全局位置
+     */
+    public int toGlobalPosition(int childPosition) {
+        int position = RecyclerView.NO_POSITION;
+        if (0 <= childPosition) {
+            position = innerToGlobalPosition(null == slotRule ? childPosition : slotRule.toInnerPosition(childPosition));
+        }
+        return position;
     }
 
     /**
-     * 查找当前是否有返回值
-     * @param array
+     * 内部位置(子条目与规则条目合并后位置)转换为全局位置
+     * @param innerPosition
+     * @return
+     */
+    private int innerToGlobalPosition(int innerPosition) {
+        return innerPosition + dynamicPositions.countInsertedBefore(innerPosition);
+    }
+
+    /**
+     * 查找当前位置是否为动态条目,返回动态条目角标,否则返回NO_POSITION
      * @param position
      * @return
      */
-    public int findPosition(int[] array,int position) {
-        int[] positions = array;
-        int start = 0, end = positions.length - 1, result = -1;
-        while (start <= end) {
-            int middle = (start + end) / 2;
-            if (position == positions[middle]) {
-                result = middle;
-                break;
-            } else if (position < positions[middle]) {
-                end = middle - 1;
+    public int findPosition(int position) {
+        return dynamicPositions.indexOf(position);
+    }
+
+    /**
+     * 获得第index个动态条目位置
+     * @param index
+     * @return
+     */
+    public int getDynamicPosition(int index) {
+        return dynamicPositions.positionAt(index);
+    }
+
+    /**
+     * 组合稳定id
+     * 1:子条目使用子Adapter id的混合值,子Adapter无稳定id(或返回NO_ID)时退化为子条目位置
+     * 2:动态条目使用添加时分配的唯一id,规则条目使用规则序号
+     * 装饰条目以高位区分,互不冲突,子条目id混合为一一映射,子条目之间不会冲突,
+     * 与装饰条目(各命名空间低位小范围)冲突的概率可忽略
+     */
+    @Override
+    public long getItemId(int position) {
+        long itemId = RecyclerView.NO_ID;
+        int index = findPosition(position);
+        if (RecyclerView.NO_POSITION != index) {
+            itemId = ID_TYPE_DYNAMIC | dynamicPositions.idAt(index);
+        } else if (isSlotItem(position)) {
+            itemId = ID_TYPE_SLOT | slotRule.getSlotIndex(position - dynamicPositions.countBefore(position));
+        } else if (null != adapter) {
+            itemId = getChildItemId(toChildPosition(position));
+        }
+        return itemId;
+    }
+
+    private long getChildItemId(int childPosition) {
+        long itemId = RecyclerView.NO_ID;
+        if (RecyclerView.NO_POSITION != childPosition) {
+            long childId = adapter.hasStableIds() ? adapter.getItemId(childPosition) : RecyclerView.NO_ID;
+            if (RecyclerView.NO_ID != childId) {
+                itemId = mixChildId(childId);
             } else {
-                start = middle + 1;
+                itemId = ID_TYPE_POSITION | childPosition;
             }
         }
-        return result;
+        return itemId;
     }
 
-    @Override
-    public long getItemId(int position) {
-        return position;
+    /**
+     * 子条目id混合(splitmix64终结函数),为long范围内一一映射,保留全部位,
+     * 负数/超大id不会因截断互相冲突
+     * 唯一映射为NO_ID的子id改为NO_ID自身的混合值,该值不会被其他子id占用
+     *
+     * @param childId 子Adapter id,不为NO_ID
+     * @return
+     */
+    private static long mixChildId(long childId) {
+        long id = mix(childId);
+        return RecyclerView.NO_ID != id ? id : mix(RecyclerView.NO_ID);
+    }
+
+    private static long mix(long value) {
+        value = (value ^ (value >>> 30)) * 0xBF58476D1CE4E5B9L;
+        value = (value ^ (value >>> 27)) * 0x94D049BB133111EBL;
+        return value ^ (value >>> 31);
     }
 
     /**
@@ -583,7 +866,7 @@ public class DynamicAdapter extends RecyclerView.Adapter<RecyclerView.ViewHolder
      * @return
      */
     public int getDynamicItemCount() {
-        return fullViews.size();
+        return dynamicPositions.size();
     }
 
     /**
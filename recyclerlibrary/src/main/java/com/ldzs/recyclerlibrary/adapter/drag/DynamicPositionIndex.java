@@ -0,0 +1,356 @@
+package com.ldzs.recyclerlibrary.adapter.drag;
+
+import android.support.v7.widget.RecyclerView;
+
+/**
+ * 动态插入条目位置索引
+ * 以相邻动态条目的位置差(gap)存储于树状数组(Fenwick)内,第i个动态条目位置为gap[0..i]之和
+ * 1:位置查找/统计为树上二分,O(log n)
+ * 2:某一位置之后所有动态条目整体偏移,只需修改一个gap,O(log n),无任何对象分配
+ * 3:添加/删除动态条目本身会重建树,O(n),但此操作远少于数据变化
+ *
+ * like: 动态条目位置 1 4 5 9
+ * gap:  1 3 1 4
+ * 在2位置插入3个条目,只需gap[1]+=3  ->  1 7 8 12
+ */
+public class DynamicPositionIndex {
+    private static final int DEFAULT_CAPACITY = 8;
+    private int[] gaps;//相邻位置差
+    private int[] tree;//gap树状数组,下标从1开始
+    private int[] viewTypes;//动态条目对应的viewType
+    private Object[] items;//动态条目绑定数据,view方式添加时为null
+    private int[] ids;//动态条目唯一id,添加时分配,随条目移动
+    private int size;
+    private int nextId;
+
+    public DynamicPositionIndex() {
+        gaps = new int[DEFAULT_CAPACITY];
+        tree = new int[DEFAULT_CAPACITY + 1];
+        viewTypes = new int[DEFAULT_CAPACITY];
+        items = new Object[DEFAULT_CAPACITY];
+        ids = new int[DEFAULT_CAPACITY];
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return 0 == size;
+    }
+
+    /**
+     * 获得第index个动态条目的位置
+     *
+     * @param index
+     * @return
+     */
+    public int positionAt(int index) {
+        checkIndex(index);
+        int sum = 0;
+        for (int i = index + 1; i > 0; i -= i & -i) {
+            sum += tree[i];
+        }
+        return sum;
+    }
+
+    public int viewTypeAt(int index) {
+        checkIndex(index);
+        return viewTypes[index];
+    }
+
+    public void setViewTypeAt(int index, int viewType) {
+        checkIndex(index);
+        viewTypes[index] = viewType;
+    }
+
+    public Object itemAt(int index) {
+        checkIndex(index);
+        return items[index];
+    }
+
+    public void setItemAt(int index, Object item) {
+        checkIndex(index);
+        items[index] = item;
+    }
+
+    /**
+     * 动态条目唯一id,位置变化不改变
+     *
+     * @param index
+     * @return
+     */
+    public int idAt(int index) {
+        checkIndex(index);
+        return ids[index];
+    }
+
+    /**
+     * 交换两个动态条目的数据(viewType/绑定数据/id),位置不变
+     *
+     * @param index
+     * @param otherIndex
+     */
+    public void swap(int index, int otherIndex) {
+        checkIndex(index);
+        checkIndex(otherIndex);
+        int viewType = viewTypes[index];
+        viewTypes[index] = viewTypes[otherIndex];
+        viewTypes[otherIndex] = viewType;
+        Object item = items[index];
+        items[index] = items[otherIndex];
+        items[otherIndex] = item;
+        int id = ids[index];
+        ids[index] = ids[otherIndex];
+        ids[otherIndex] = id;
+    }
+
+    /**
+     * 查找viewType对应的角标,此操作不常用,为线性查找
+     *
+     * @param viewType
+     * @return
+     */
+    public int indexOfViewType(int viewType) {
+        int index = RecyclerView.NO_POSITION;
+        for (int i = 0; i < size; i++) {
+            if (viewType == viewTypes[i]) {
+                index = i;
+                break;
+            }
+        }
+        return index;
+    }
+
+    /**
+     * 查找position所在动态条目角标,不存在返回NO_POSITION
+     *
+     * @param position
+     * @return
+     */
+    public int indexOf(int position) {
+        int index = 0, remain = position;
+        for (int step = Integer.highestOneBit(size); 0 < step; step >>= 1) {
+            int next = index + step;
+            if (next <= size && tree[next] <= remain) {
+                index = next;
+                remain -= tree[next];
+            }
+        }
+        return 0 < index && 0 == remain ? index - 1 : RecyclerView.NO_POSITION;
+    }
+
+    /**
+     * 位置小于等于position的动态条目个数
+     *
+     * @param position
+     * @return
+     */
+    public int countAtOrBefore(int position) {
+        int index = 0, remain = position;
+        for (int step = Integer.highestOneBit(size); 0 < step; step >>= 1) {
+            int next = index + step;
+            if (next <= size && tree[next] <= remain) {
+                index = next;
+                remain -= tree[next];
+            }
+        }
+        return index;
+    }
+
+    /**
+     * 位置小于position的动态条目个数,即position之后第一个动态条目角标
+     *
+     * @param position
+     * @return
+     */
+    public int countBefore(int position) {
+        return countAtOrBefore(position - 1);
+    }
+
+    /**
+     * 排在子条目childPosition之前的动态条目个数
+     * 第i个动态条目之前的子条目个数为:position(i)-i,此值非递减,所以同样可以树上二分
+     *
+     * @param childPosition
+     * @return
+     */
+    public int countInsertedBefore(int childPosition) {
+        //position(i)-i<=childPosition 等价于 (gap[0]-1)+...+(gap[i]-1)<=childPosition-1
+        int index = 0, remain = childPosition - 1;
+        for (int step = Integer.highestOneBit(size); 0 < step; step >>= 1) {
+            int next = index + step;
+            if (next <= size && tree[next] - step <= remain) {
+                index = next;
+                remain -= tree[next] - step;
+            }
+        }
+        return index;
+    }
+
+    /**
+     * 添加一个动态条目位置,其他动态条目位置不变
+     *
+     * @param position
+     * @param viewType
+     * @return 添加角标, 己存在时返回NO_POSITION
+     */
+    public int insert(int position, int viewType) {
+        return insert(position, viewType, null);
+    }
+
+    /**
+     * 添加一个带绑定数据的动态条目位置,其他动态条目位置不变
+     *
+     * @param position
+     * @param viewType
+     * @param item
+     * @return 添加角标, 己存在时返回NO_POSITION
+     */
+    public int insert(int position, int viewType, Object item) {
+        if (RecyclerView.NO_POSITION != indexOf(position)) return RecyclerView.NO_POSITION;
+        int index = countBefore(position);
+        int gap = position - (0 < index ? positionAt(index - 1) : 0);
+        ensureCapacity(size + 1);
+        if (index < size) {
+            gaps[index] -= gap;
+            System.arraycopy(gaps, index, gaps, index + 1, size - index);
+            System.arraycopy(viewTypes, index, viewTypes, index + 1, size - index);
+            System.arraycopy(items, index, items, index + 1, size - index);
+            System.arraycopy(ids, index, ids, index + 1, size - index);
+        }
+        gaps[index] = gap;
+        viewTypes[index] = viewType;
+        items[index] = item;
+        ids[index] = nextId++;
+        size++;
+        rebuild();
+        return index;
+    }
+
+    /**
+     * 移除一个动态条目,其他动态条目位置不变
+     *
+     * @param index
+     */
+    public void removeAt(int index) {
+        removeRange(index, index + 1);
+    }
+
+    /**
+     * 移除[fromIndex,toIndex)范围内动态条目,其他动态条目位置不变
+     *
+     * @param fromIndex
+     * @param toIndex
+     */
+    public void removeRange(int fromIndex, int toIndex) {
+        if (fromIndex >= toIndex) return;
+        checkIndex(fromIndex);
+        checkIndex(toIndex - 1);
+        if (toIndex < size) {
+            for (int i = fromIndex; i < toIndex; i++) {
+                gaps[toIndex] += gaps[i];
+            }
+        }
+        System.arraycopy(gaps, toIndex, gaps, fromIndex, size - toIndex);
+        System.arraycopy(viewTypes, toIndex, viewTypes, fromIndex, size - toIndex);
+        System.arraycopy(items, toIndex, items, fromIndex, size - toIndex);
+        System.arraycopy(ids, toIndex, ids, fromIndex, size - toIndex);
+        //释放数据引用
+        for (int i = size - (toIndex - fromIndex); i < size; i++) {
+            items[i] = null;
+        }
+        size -= toIndex - fromIndex;
+        rebuild();
+    }
+
+    /**
+     * 位置大于等于fromPosition的所有动态条目整体偏移offset
+     * 负向偏移时,由调用者保证偏移后不与前面的动态条目重叠
+     *
+     * @param fromPosition
+     * @param offset
+     */
+    public void offset(int fromPosition, int offset) {
+        offsetFrom(countBefore(fromPosition), offset);
+    }
+
+    /**
+     * 第index个以及之后所有动态条目整体偏移offset
+     *
+     * @param index
+     * @param offset
+     */
+    public void offsetFrom(int index, int offset) {
+        if (0 != offset && index < size) {
+            add(index, offset);
+        }
+    }
+
+    /**
+     * 更改单个动态条目位置,不影响其他动态条目,由调用者保证不越过相邻条目
+     *
+     * @param index
+     * @param position
+     */
+    public void setPositionAt(int index, int position) {
+        int offset = position - positionAt(index);
+        if (0 != offset) {
+            add(index, offset);
+            if (index + 1 < size) {
+                add(index + 1, -offset);
+            }
+        }
+    }
+
+    public void clear() {
+        for (int i = 0; i < size; i++) {
+            items[i] = null;
+        }
+        size = 0;
+    }
+
+    private void add(int index, int value) {
+        gaps[index] += value;
+        for (int i = index + 1; i <= size; i += i & -i) {
+            tree[i] += value;
+        }
+    }
+
+    private void rebuild() {
+        for (int i = 1; i <= size; i++) {
+            tree[i] = gaps[i - 1];
+        }
+        for (int i = 1; i <= size; i++) {
+            int parent = i + (i & -i);
+            if (parent <= size) {
+                tree[parent] += tree[i];
+            }
+        }
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (gaps.length < capacity) {
+            int newCapacity = Math.max(capacity, gaps.length * 2);
+            int[] newGaps = new int[newCapacity];
+            int[] newViewTypes = new int[newCapacity];
+            Object[] newItems = new Object[newCapacity];
+            int[] newIds = new int[newCapacity];
+            System.arraycopy(gaps, 0, newGaps, 0, size);
+            System.arraycopy(viewTypes, 0, newViewTypes, 0, size);
+            System.arraycopy(items, 0, newItems, 0, size);
+            System.arraycopy(ids, 0, newIds, 0, size);
+            gaps = newGaps;
+            viewTypes = newViewTypes;
+            items = newItems;
+            ids = newIds;
+            tree = new int[newCapacity + 1];
+        }
+    }
+
+    private void checkIndex(int index) {
+        if (0 > index || index >= size) {
+            throw new IndexOutOfBoundsException("index:" + index + " size:" + size);
+        }
+    }
+}
@@ -0,0 +1,115 @@
+package com.ldzs.recyclerlibrary.adapter.drag;
+
+import android.support.v7.widget.RecyclerView;
+
+/**
+ * 规则插入条目,如:每8个子条目后插入一个广告位
+ * 插入位置由规则直接计算,不记录任何位置,条目转换均为O(1),无论列表多长,占用固定
+ * like: first=2 interval=3
+ * 0 1 [0] 2 3 4 [1] 5 6 7 [2] 8
+ *
+ * 此处位置均为"内部位置",即子条目与规则条目合并后的位置,动态条目再插入其上
+ */
+public class SlotRule {
+    private final int first;
+    private final int interval;
+
+    /**
+     * 每interval个子条目后插入一个
+     *
+     * @param interval
+     * @return
+     */
+    public static SlotRule every(int interval) {
+        return new SlotRule(interval, interval);
+    }
+
+    /**
+     * @param first    第一个规则条目之前的子条目个数
+     * @param interval 之后每两个规则条目间的子条目个数
+     */
+    public SlotRule(int first, int interval) {
+        if (1 > first || 1 > interval) {
+            throw new IllegalArgumentException("first and interval must be greater than zero!");
+        }
+        this.first = first;
+        this.interval = interval;
+    }
+
+    /**
+     * 子条目个数为childCount时,规则条目个数
+     *
+     * @param childCount
+     * @return
+     */
+    public int getSlotCount(int childCount) {
+        return childCount < first ? 0 : (childCount - first) / interval + 1;
+    }
+
+    /**
+     * 子条目与规则条目总个数
+     *
+     * @param childCount
+     * @return
+     */
+    public int getItemCount(int childCount) {
+        return childCount + getSlotCount(childCount);
+    }
+
+    public boolean isSlot(int innerPosition) {
+        return innerPosition >= first && 0 == (innerPosition - first) % (interval + 1);
+    }
+
+    /**
+     * 大于等于innerPosition的第一个规则条目内部位置
+     *
+     * @param innerPosition
+     * @return
+     */
+    public int nextSlotPosition(int innerPosition) {
+        int position = first;
+        if (innerPosition > first) {
+            int step = interval + 1;
+            position = first + (innerPosition - first + step - 1) / step * step;
+        }
+        return position;
+    }
+
+    /**
+     * 内部位置对应的规则条目序号
+     *
+     * @param innerPosition
+     * @return
+     */
+    public int getSlotIndex(int innerPosition) {
+        return isSlot(innerPosition) ? (innerPosition - first) / (interval + 1) : RecyclerView.NO_POSITION;
+    }
+
+    /**
+     * 子条目位置转换为内部位置
+     *
+     * @param childPosition
+     * @return
+     */
+    public int toInnerPosition(int childPosition) {
+        return childPosition + getSlotCount(childPosition);
+    }
+
+    /**
+     * 内部位置转换为子条目位置,规则条目返回NO_POSITION
+     *
+     * @param innerPosition
+     * @return
+     */
+    public int toChildPosition(int innerPosition) {
+        int childPosition;
+        if (innerPosition < first) {
+            childPosition = innerPosition;
+        } else if (isSlot(innerPosition)) {
+            childPosition = RecyclerView.NO_POSITION;
+        } else {
+            childPosition = innerPosition - (innerPosition - first) / (interval + 1) - 1;
+        }
+        return childPosition;
+    }
+}
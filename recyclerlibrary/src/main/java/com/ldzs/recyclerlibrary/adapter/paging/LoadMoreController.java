@@ -0,0 +1,253 @@
+package com.ldzs.recyclerlibrary.adapter.paging;
+
+import android.os.AsyncTask;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+import android.util.SparseArray;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * 异步分页加载控制器
+ * 在Executor线程执行PageFetcher,结果回到主线程后每页只回调一次,由PagedViewAdapter一次通知整页更新
+ * 同一页加载中时不重复请求,只替换回调,失败时按延时倍增重试,超过次数回调失败
+ * 同时执行的请求个数有限,其余在主线程排队,后请求的页先执行(离当前滑动位置最近),排队过多时丢弃最早的请求并回调失败,
+ * 滑出窗口的页由cancel取消,快速滑动/跳转时不会在共享线程池堆积请求;Executor拒绝执行时按失败重试,不会抛出到布局中
+ * 刷新时cancelAll取消所有进行中请求,已发出的请求结果被丢弃
+ */
+public class LoadMoreController<E> implements PageSource<E> {
+    private static final String TAG = "LoadMoreController";
+    private static final int DEFAULT_RETRY_COUNT = 2;
+    private static final long DEFAULT_RETRY_DELAY = 500;
+    private static final int DEFAULT_MAX_RUNNING_COUNT = 2;
+    private static final int DEFAULT_MAX_PENDING_COUNT = 16;
+    private final PageFetcher<E> fetcher;
+    private final Executor executor;
+    private final Handler handler;
+    private final SparseArray<PageRequest> requests;//进行中请求,key为页码
+    private final ArrayList<PageRequest> pending;//等待执行请求,末尾优先
+    private int runningCount;//已提交给Executor未完成的请求,含已取消
+    private int maxRunningCount;
+    private int maxPendingCount;
+    private int maxRetryCount;
+    private long retryDelay;
+    private int generation;
+
+    public LoadMoreController(PageFetcher<E> fetcher) {
+        this(fetcher, AsyncTask.THREAD_POOL_EXECUTOR);
+    }
+
+    public LoadMoreController(PageFetcher<E> fetcher, Executor executor) {
+        this.fetcher = fetcher;
+        this.executor = executor;
+        this.handler = new Handler(Looper.getMainLooper());
+        this.requests = new SparseArray<>();
+        this.pending = new ArrayList<>();
+        this.maxRunningCount = DEFAULT_MAX_RUNNING_COUNT;
+        this.maxPendingCount = DEFAULT_MAX_PENDING_COUNT;
+        this.maxRetryCount = DEFAULT_RETRY_COUNT;
+        this.retryDelay = DEFAULT_RETRY_DELAY;
+    }
+
+    /**
+     * 设置失败重试
+     *
+     * @param maxRetryCount 最大重试次数,0为不重试
+     * @param retryDelay    首次重试延时,之后每次加倍
+     */
+    public void setRetry(int maxRetryCount, long retryDelay) {
+        this.maxRetryCount = Math.max(0, maxRetryCount);
+        this.retryDelay = Math.max(0, retryDelay);
+    }
+
+    /**
+     * 设置请求个数限制
+     *
+     * @param maxRunningCount 同时执行的最大请求数
+     * @param maxPendingCount 最大排队请求数,超过时丢弃最早的请求
+     */
+    public void setMaxRequestCount(int maxRunningCount, int maxPendingCount) {
+        this.maxRunningCount = Math.max(1, maxRunningCount);
+        this.maxPendingCount = Math.max(0, maxPendingCount);
+        schedule();
+    }
+
+    /**
+     * @param page
+     * @return 该页是否加载中(含排队与等待重试)
+     */
+    public boolean isLoading(int page) {
+        return null != requests.get(page);
+    }
+
+    @Override
+    public void loadPage(int page, int pageSize, PageCallback<E> callback) {
+        PageRequest request = requests.get(page);
+        if (null != request && request.pageSize == pageSize) {
+            //去重,结果交给最新回调
+            request.callback = callback;
+        } else {
+            if (null != request) {
+                request.cancelled = true;
+            }
+            request = new PageRequest(page, pageSize, callback, generation);
+            requests.put(page, request);
+            enqueue(request);
+        }
+    }
+
+    /**
+     * 取消单页请求,如该页滑出窗口时,执行中的请求结果被丢弃
+     */
+    @Override
+    public void cancel(int page) {
+        PageRequest request = requests.get(page);
+        if (null != request) {
+            request.cancelled = true;
+            requests.remove(page);
+            pending.remove(request);
+        }
+    }
+
+    /**
+     * 取消所有进行中/等待重试请求,如下拉刷新时
+     */
+    @Override
+    public void cancelAll() {
+        generation++;
+        for (int i = 0; i < requests.size(); i++) {
+            requests.valueAt(i).cancelled = true;
+        }
+        requests.clear();
+        pending.clear();
+    }
+
+    private boolean isActive(PageRequest request) {
+        return !request.cancelled && request.generation == generation && requests.get(request.page) == request;
+    }
+
+    private void enqueue(PageRequest request) {
+        pending.add(request);
+        if (pending.size() > maxPendingCount) {
+            //丢弃最早的等待请求,所在页再次绑定时重新请求
+            final PageRequest dropped = pending.remove(0);
+            if (isActive(dropped)) {
+                dropped.cancelled = true;
+                requests.remove(dropped.page);
+                handler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        //期间已重新请求时,结果由新请求回调
+                        if (dropped.generation == generation && null == requests.get(dropped.page)) {
+                            dropped.callback.onPageFailed();
+                        }
+                    }
+                });
+            }
+        }
+        schedule();
+    }
+
+    /**
+     * 在执行个数限制内,从队尾取出请求提交给Executor
+     */
+    private void schedule() {
+        while (runningCount < maxRunningCount && !pending.isEmpty()) {
+            final PageRequest request = pending.remove(pending.size() - 1);
+            if (!isActive(request)) continue;
+            runningCount++;
+            try {
+                executor.execute(request);
+            } catch (RejectedExecutionException e) {
+                //线程池已满,按失败处理,不在调用方(可能为列表布局)中抛出
+                runningCount--;
+                Log.w(TAG, "execute page " + request.page + " rejected", e);
+                handler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        request.deliverFailure();
+                    }
+                });
+                break;
+            }
+        }
+    }
+
+    /**
+     * 单页请求,run在Executor线程执行,结果回到主线程
+     */
+    private class PageRequest implements Runnable {
+        final int page;
+        final int pageSize;
+        final int generation;
+        PageCallback<E> callback;
+        volatile boolean cancelled;
+        int retryCount;
+
+        PageRequest(int page, int pageSize, PageCallback<E> callback, int generation) {
+            this.page = page;
+            this.pageSize = pageSize;
+            this.callback = callback;
+            this.generation = generation;
+        }
+
+        @Override
+        public void run() {
+            List<E> items = null;
+            boolean success = false;
+            if (!cancelled) {
+                try {
+                    items = fetcher.fetchPage(page, pageSize);
+                    success = true;
+                } catch (Exception e) {
+                    Log.w(TAG, "fetch page " + page + " failed, retry:" + retryCount, e);
+                }
+            }
+            final List<E> result = items;
+            final boolean loaded = success;
+            handler.post(new Runnable() {
+                @Override
+                public void run() {
+                    //已取消的请求同样释放执行位置
+                    runningCount--;
+                    if (loaded) {
+                        deliverResult(result);
+                    } else {
+                        deliverFailure();
+                    }
+                    schedule();
+                }
+            });
+        }
+
+        void deliverResult(List<E> items) {
+            if (!isActive(this)) return;
+            requests.remove(page);
+            callback.onPageLoaded(items);
+        }
+
+        void deliverFailure() {
+            if (!isActive(this)) return;
+            if (retryCount < maxRetryCount) {
+                //延时倍增后重试
+                long delay = retryDelay << retryCount;
+                retryCount++;
+                handler.postDelayed(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (isActive(PageRequest.this)) {
+                            enqueue(PageRequest.this);
+                        }
+                    }
+                }, delay);
+            } else {
+                requests.remove(page);
+                callback.onPageFailed();
+            }
+        }
+    }
+}
@@ -0,0 +1,18 @@
+package com.ldzs.recyclerlibrary.adapter.paging;
+
+import java.util.List;
+
+/**
+ * 同步获取一页数据,在LoadMoreController的Executor线程执行
+ *
+ * @see LoadMoreController
+ */
+public interface PageFetcher<E> {
+    /**
+     * @param page     页码,从0开始
+     * @param pageSize 每页条目数
+     * @return 本页条目,少于pageSize时视为最后一页
+     * @throws Exception 获取失败,按重试次数延时重试
+     */
+    List<E> fetchPage(int page, int pageSize) throws Exception;
+}
@@ -0,0 +1,38 @@
+package com.ldzs.recyclerlibrary.adapter.paging;
+
+import java.util.List;
+
+/**
+ * 分页数据源,按页码加载固定大小的一页数据
+ *
+ * @see PagedViewAdapter
+ */
+public interface PageSource<E> {
+    /**
+     * 加载第page页,完成后在主线程回调callback,同一页重新加载(被回收后)时,应返回相同条目
+     * 占位页在绑定时加载,不可在此方法内直接同步回调或抛出异常,否则会在列表布局中通知更新或中断布局
+     *
+     * @param page     页码,从0开始
+     * @param pageSize 每页条目数,返回条目少于pageSize时视为最后一页
+     * @param callback
+     */
+    void loadPage(int page, int pageSize, PageCallback<E> callback);
+
+    /**
+     * 取消单页请求,该页滑出内存窗口时调用,之后不应再回调该请求,无异步请求时可为空实现
+     *
+     * @param page 页码
+     */
+    void cancel(int page);
+
+    /**
+     * 取消所有进行中请求,刷新时调用,之后不应再回调已取消请求,无异步请求时可为空实现
+     */
+    void cancelAll();
+
+    interface PageCallback<E> {
+        void onPageLoaded(List<E> items);
+
+        void onPageFailed();
+    }
+}
@@ -0,0 +1,304 @@
+package com.ldzs.recyclerlibrary.adapter.paging;
+
+import android.content.Context;
+import android.support.v7.widget.RecyclerView;
+
+import com.ldzs.recyclerlibrary.PullToRefreshRecyclerView;
+import com.ldzs.recyclerlibrary.adapter.BaseViewAdapter;
+import com.ldzs.recyclerlibrary.adapter.CacheViewHolder;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * 分页窗口数据适配器
+ * 由PageSource按页加载,加载更多时追加一页,内存中只保留当前绑定页与可见页附近windowPageCount页数据,
+ * 窗口外页条目回收为null占位,条目个数不变,滑动位置不变,占位页进入窗口时重新加载
+ * 条目位置与页对应,不要再使用添加/移除条目方法修改数据
+ * 数据源可使用LoadMoreController,在后台线程加载并去重/重试
+ *
+ * 使用:
+ * adapter.setupWithRecyclerView(recyclerView);
+ * adapter.refresh();
+ */
+public abstract class PagedViewAdapter<E> extends BaseViewAdapter<E> implements PullToRefreshRecyclerView.OnPullFooterToRefreshListener {
+    private static final int DEFAULT_WINDOW_PAGE_COUNT = 5;
+    private static final byte PAGE_PLACEHOLDER = 0;//已回收/未加载
+    private static final byte PAGE_LOADING = 1;
+    private static final byte PAGE_LOADED = 2;
+    private final PageSource<E> pageSource;
+    private final int pageSize;
+    private byte[] pageStates;
+    private int pageCount;//已追加页数,条目个数由此固定
+    private int windowPageCount;
+    private int currentPage;//最近绑定位置所在页
+    private int visibleFirstPage;//最近绑定时可见子条目首尾所在页,未关联列表时为-1
+    private int visibleLastPage;
+    private boolean lastPageLoaded;
+    private int generation;//刷新后,之前的加载结果丢弃
+    private PullToRefreshRecyclerView recyclerView;
+
+    public PagedViewAdapter(Context context, PageSource<E> pageSource, int pageSize) {
+        super(context, null);
+        if (0 >= pageSize) {
+            throw new IllegalArgumentException("page size must be positive!");
+        }
+        this.pageSource = pageSource;
+        this.pageSize = pageSize;
+        this.pageStates = new byte[16];
+        this.windowPageCount = DEFAULT_WINDOW_PAGE_COUNT;
+        this.visibleFirstPage = this.visibleLastPage = -1;
+    }
+
+    /**
+     * 设置内存中保留页数,以当前绑定页为中心,可见页及其前后各count/2页同样保留
+     *
+     * @param count
+     */
+    public void setWindowPageCount(int count) {
+        this.windowPageCount = Math.max(1, count);
+    }
+
+    /**
+     * 关联列表,加载更多回调追加下一页,加载完成后通知列表
+     *
+     * @param recyclerView
+     */
+    public void setupWithRecyclerView(PullToRefreshRecyclerView recyclerView) {
+        this.recyclerView = recyclerView;
+        recyclerView.setOnPullFooterToRefreshListener(this);
+    }
+
+    public int getPageSize() {
+        return pageSize;
+    }
+
+    /**
+     * 条目所在页是否已加载,未加载时getItem返回null
+     *
+     * @param position
+     * @return
+     */
+    public boolean isPlaceholder(int position) {
+        return null == items.get(position);
+    }
+
+    /**
+     * 清空所有页,重新加载第一页
+     */
+    public void refresh() {
+        generation++;
+        //取消刷新前进行中的请求
+        pageSource.cancelAll();
+        items.clear();
+        Arrays.fill(pageStates, PAGE_PLACEHOLDER);
+        pageCount = 0;
+        currentPage = 0;
+        visibleFirstPage = visibleLastPage = -1;
+        lastPageLoaded = false;
+        notifyDataSetChanged();
+        loadNextPage();
+    }
+
+    @Override
+    public void onRefresh() {
+        loadNextPage();
+    }
+
+    /**
+     * 追加下一页
+     */
+    public void loadNextPage() {
+        if (lastPageLoaded) {
+            if (null != recyclerView) {
+                recyclerView.onRefreshFootComplete();
+                recyclerView.setFooterRefreshDone();
+            }
+        } else if (PAGE_LOADING != getPageState(pageCount)) {
+            loadPage(pageCount);
+        }
+    }
+
+    @Override
+    public final void onBindViewHolder(CacheViewHolder holder, int position) {
+        onPageBound(position / pageSize);
+        E item = items.get(position);
+        if (null == item) {
+            onBindPlaceholder(holder, position);
+        } else {
+            onBindItem(holder, position, item);
+        }
+    }
+
+    /**
+     * 绑定已加载条目
+     */
+    public abstract void onBindItem(CacheViewHolder holder, int position, E item);
+
+    /**
+     * 绑定占位条目,所在页加载后会再次通知绑定
+     */
+    public abstract void onBindPlaceholder(CacheViewHolder holder, int position);
+
+    /**
+     * 绑定页变化时,回收窗口外页并取消窗口外加载中页,加载窗口内占位页
+     * 窗口为绑定页附近页与可见页附近页,快速滑动时绑定页可能在可见范围一端,可见页不会被回收
+     */
+    private void onPageBound(int page) {
+        if (page == currentPage && PAGE_PLACEHOLDER != getPageState(page)) return;
+        currentPage = page;
+        updateVisiblePages();
+        for (int i = 0; i < pageCount; i++) {
+            if (!isInWindow(i)) {
+                if (PAGE_LOADED == pageStates[i]) {
+                    evictPage(i);
+                } else if (PAGE_LOADING == pageStates[i]) {
+                    //加载中滑出窗口,取消请求
+                    pageSource.cancel(i);
+                    pageStates[i] = PAGE_PLACEHOLDER;
+                }
+            } else if (PAGE_PLACEHOLDER == pageStates[i]) {
+                loadPage(i);
+            }
+        }
+    }
+
+    /**
+     * 由列表首尾可见位置获得可见子条目所在页,头/尾等非子条目位置向内查找
+     * 绑定发生在布局中,可见位置为上次布局结果,本次新绑定页由currentPage覆盖
+     */
+    private void updateVisiblePages() {
+        visibleFirstPage = visibleLastPage = -1;
+        if (null == recyclerView || this != recyclerView.getAdapter() || null == recyclerView.getLayoutManager()) return;
+        int first = recyclerView.getFirstVisiblePosition();
+        int last = recyclerView.getLastVisiblePosition();
+        if (RecyclerView.NO_POSITION == first || RecyclerView.NO_POSITION == last) return;
+        int firstItem = RecyclerView.NO_POSITION;
+        for (int position = first; position <= last && RecyclerView.NO_POSITION == firstItem; position++) {
+            firstItem = recyclerView.getItemPosition(position);
+        }
+        int lastItem = RecyclerView.NO_POSITION;
+        for (int position = last; position >= first && RecyclerView.NO_POSITION == lastItem; position--) {
+            lastItem = recyclerView.getItemPosition(position);
+        }
+        if (RecyclerView.NO_POSITION != firstItem && RecyclerView.NO_POSITION != lastItem) {
+            visibleFirstPage = firstItem / pageSize;
+            visibleLastPage = lastItem / pageSize;
+        }
+    }
+
+    private boolean isInWindow(int page) {
+        int half = windowPageCount / 2;
+        int windowStart = Math.max(0, currentPage - half);
+        if (windowStart <= page && page < windowStart + windowPageCount) {
+            return true;
+        }
+        return -1 != visibleFirstPage && visibleFirstPage - half <= page && page <= visibleLastPage + half;
+    }
+
+    /**
+     * 加载完成时不在布局中,按当前可见位置重新判断,仍可见的占位页不丢弃
+     */
+    private boolean isLoadedInWindow(int page) {
+        if (isInWindow(page)) return true;
+        updateVisiblePages();
+        return isInWindow(page);
+    }
+
+    /**
+     * 回收页数据,只置空条目,不通知更新,窗口外条目不可见
+     */
+    private void evictPage(int page) {
+        int start = page * pageSize;
+        int end = Math.min(start + pageSize, items.size());
+        for (int i = start; i < end; i++) {
+            items.set(i, null);
+        }
+        pageStates[page] = PAGE_PLACEHOLDER;
+    }
+
+    private byte getPageState(int page) {
+        return page < pageStates.length ? pageStates[page] : PAGE_PLACEHOLDER;
+    }
+
+    private void loadPage(int page) {
+        if (pageStates.length <= page) {
+            byte[] newStates = new byte[Math.max(page + 1, pageStates.length * 2)];
+            System.arraycopy(pageStates, 0, newStates, 0, pageStates.length);
+            pageStates = newStates;
+        }
+        pageStates[page] = PAGE_LOADING;
+        pageSource.loadPage(page, pageSize, new PageLoadCallback(page, generation));
+    }
+
+    private void onPageLoaded(int page, List<E> list) {
+        int size = null == list ? 0 : list.size();
+        if (page == pageCount) {
+            //追加页
+            int start = items.size();
+            if (0 < size) {
+                items.addAll(list.subList(0, Math.min(size, pageSize)));
+            }
+            pageCount++;
+            pageStates[page] = PAGE_LOADED;
+            lastPageLoaded = size < pageSize;
+            if (0 < size) {
+                notifyItemRangeInserted(start, Math.min(size, pageSize));
+            }
+            if (null != recyclerView) {
+                recyclerView.onRefreshFootComplete();
+                if (lastPageLoaded) {
+                    recyclerView.setFooterRefreshDone();
+                }
+            }
+        } else if (!isLoadedInWindow(page)) {
+            //加载期间已滑出窗口,丢弃
+            pageStates[page] = PAGE_PLACEHOLDER;
+        } else {
+            //重新加载回收页,条目个数不变
+            int start = page * pageSize;
+            int count = Math.min(size, Math.min(start + pageSize, items.size()) - start);
+            for (int i = 0; i < count; i++) {
+                items.set(start + i, list.get(i));
+            }
+            pageStates[page] = PAGE_LOADED;
+            if (0 < count) {
+                notifyItemRangeChanged(start, count);
+            }
+        }
+    }
+
+    private void onPageFailed(int page) {
+        pageStates[page] = PAGE_PLACEHOLDER;
+        if (page == pageCount && null != recyclerView) {
+            recyclerView.onRefreshFootComplete();
+        }
+    }
+
+    /**
+     * 单页加载回调,刷新后的旧回调忽略
+     */
+    private class PageLoadCallback implements PageSource.PageCallback<E> {
+        private final int page;
+        private final int generation;
+
+        PageLoadCallback(int page, int generation) {
+            this.page = page;
+            this.generation = generation;
+        }
+
+        @Override
+        public void onPageLoaded(List<E> items) {
+            if (generation == PagedViewAdapter.this.generation) {
+                PagedViewAdapter.this.onPageLoaded(page, items);
+            }
+        }
+
+        @Override
+        public void onPageFailed() {
+            if (generation == PagedViewAdapter.this.generation) {
+                PagedViewAdapter.this.onPageFailed(page);
+            }
+        }
+    }
+}
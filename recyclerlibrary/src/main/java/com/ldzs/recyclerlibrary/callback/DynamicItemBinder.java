@@ -0,0 +1,15 @@
+package com.ldzs.recyclerlibrary.callback;
+
+import android.support.v7.widget.RecyclerView;
+import android.view.ViewGroup;
+
+/**
+ * 动态条目创建/绑定回调
+ * 同一binder添加的所有动态条目共用一个viewType,经RecycledViewPool复用,只持有数据,不持有view
+ * @see com.ldzs.recyclerlibrary.adapter.drag.DynamicAdapter#addDynamicItem(DynamicItemBinder, Object, int)
+ */
+public interface DynamicItemBinder<VH extends RecyclerView.ViewHolder, E> {
+    VH onCreateViewHolder(ViewGroup parent);
+
+    void onBindViewHolder(VH holder, E item);
+}
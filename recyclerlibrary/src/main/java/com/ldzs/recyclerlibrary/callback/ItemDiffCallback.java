@@ -0,0 +1,18 @@
+package com.ldzs.recyclerlibrary.callback;
+
+/**
+ * 数据差异比较回调,在后台线程调用
+ *
+ * @see com.ldzs.recyclerlibrary.adapter.ItemListDiffer
+ */
+public interface ItemDiffCallback<E> {
+    /**
+     * 是否为同一条目,如id相同
+     */
+    boolean areItemsTheSame(E oldItem, E newItem);
+
+    /**
+     * 同一条目内容是否相同,不同时通知更新
+     */
+    boolean areContentsTheSame(E oldItem, E newItem);
+}
@@ -0,0 +1,9 @@
+package com.ldzs.recyclerlibrary.callback;
+
+/**
+ * 条目键,用于BaseViewAdapter按键查找条目位置
+ * 键需唯一且实现equals/hashCode,如消息id,行情代码
+ */
+public interface ItemKeyProvider<E> {
+    Object getItemKey(E item);
+}
@@ -45,7 +45,7 @@ public class MyItemTouchHelperCallback extends ItemTouchHelper.Callback {
             int index = adapter.findPosition(position);
             //动态添加的并启用的,可以拖动.或者自身条目本身启用可以拖动的.
             if (RecyclerView.NO_POSITION != index && dynamicViewDragEnable ||
-                    null != dragListener && !dragListener.itemEnable(position - adapter.getStartIndex(position))) {
+                    null != dragListener && !dragListener.itemEnable(adapter.toChildPosition(position))) {
                 flag = makeFlag(ItemTouchHelper.ACTION_STATE_IDLE, ItemTouchHelper.DOWN);
             }
         }
@@ -79,7 +79,7 @@ public class MyItemTouchHelperCallback extends ItemTouchHelper.Callback {
             int index = adapter.findPosition(targetPosition);
             if (RecyclerView.NO_POSITION != index) {
                 itemEnable = dynamicViewDragEnable;
-            } else if (null != dragListener && dragListener.itemEnable(targetPosition - adapter.getStartIndex(position))) {
+            } else if (null != dragListener && dragListener.itemEnable(adapter.toChildPosition(targetPosition))) {
                 itemEnable = true;
             }
         } else {
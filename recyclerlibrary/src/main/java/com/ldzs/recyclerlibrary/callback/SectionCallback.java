@@ -0,0 +1,13 @@
+package com.ldzs.recyclerlibrary.callback;
+
+/**
+ * 分组索引文字回调,由实现StickyCallback的数据适配器选择实现
+ * @see com.ldzs.recyclerlibrary.SectionIndexView
+ */
+public interface SectionCallback {
+    /**
+     * @param position 分组起始子条目位置
+     * @return 索引显示文字, 如拼音首字母
+     */
+    CharSequence getSectionLabel(int position);
+}
@@ -6,5 +6,12 @@ import android.support.v7.widget.RecyclerView;
  * Created by czz on 2016/9/15.
  */
 public interface Selectable<VH extends RecyclerView.ViewHolder> {
+    /**
+     * 更新选中状态,完整绑定后调用,选中状态变化(SelectionPayload)时单独调用,此时条目不重新绑定,只需更新选中控件
+     *
+     * @param holder
+     * @param position 子条目位置
+     * @param select
+     */
     void onSelectItem(VH holder, int position, boolean select);
 }
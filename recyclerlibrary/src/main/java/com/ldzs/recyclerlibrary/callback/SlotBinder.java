@@ -0,0 +1,15 @@
+package com.ldzs.recyclerlibrary.callback;
+
+import android.support.v7.widget.RecyclerView;
+import android.view.ViewGroup;
+
+/**
+ * 规则插入条目绑定回调
+ * 所有规则条目共用一个viewType,经RecycledViewPool复用,只在显示时绑定
+ * @see com.ldzs.recyclerlibrary.adapter.drag.SlotRule
+ */
+public interface SlotBinder<VH extends RecyclerView.ViewHolder> {
+    VH onCreateSlotViewHolder(ViewGroup parent);
+
+    void onBindSlotViewHolder(VH holder, int slotIndex);
+}
@@ -1,17 +1,22 @@
 package com.ldzs.recyclerlibrary.divide;
 
 import android.graphics.Canvas;
+import android.graphics.Paint;
 import android.graphics.Rect;
 import android.graphics.drawable.ColorDrawable;
 import android.graphics.drawable.Drawable;
 import android.support.annotation.IntDef;
 import android.support.v7.widget.GridLayoutManager;
 import android.support.v7.widget.RecyclerView;
-import android.util.Log;
 import android.view.View;
 
+import com.ldzs.recyclerlibrary.adapter.drag.CachedSpanSizeLookup;
+
 /**
  * Created by cz on 16/1/22.
+ * 分隔线为ColorDrawable时,一帧内所有分隔线收集到复用缓冲区,以一次drawLines绘制,
+ * 不可见或空的分隔线直接跳过
+ * GRID模式下SpanSizeLookup为CachedSpanSizeLookup时,按列角标均分偏移,相邻条目共用一条分隔线,列/行角标O(1)取自缓存
  */
 public class SimpleItemDecoration extends RecyclerView.ItemDecoration {
     private static final String TAG = "SimpleItemDecoration";
@@ -28,12 +33,18 @@ public class SimpleItemDecoration extends RecyclerView.ItemDecoration {
     private boolean showFooter;
     private Drawable drawable;
     private int divideMode;
+    private final Paint linePaint;
+    private float[] lines;//分隔线缓冲,每条线4个值
+    private int lineCount;
 
     @IntDef(value = {HORIZONTAL, VERTICAL, GRID})
     public @interface Mode {
     }
 
     public SimpleItemDecoration() {
+        linePaint = new Paint();
+        linePaint.setStrokeCap(Paint.Cap.BUTT);
+        lines = new float[64];
     }
 
     public void setStrokeWidth(int strokeWidth) {
@@ -85,23 +96,90 @@ public class SimpleItemDecoration extends RecyclerView.ItemDecoration {
     @Override
     public void onDraw(Canvas c, RecyclerView parent, RecyclerView.State state) {
         super.onDraw(c, parent, state);
-        if(null==drawable) return ;
+        if(null==drawable||0>=strokeWidth) return ;
         switch (divideMode) {
             case VERTICAL:
-                drawLinearVertical(c, parent, state);
+                collectLinearVertical(c, parent, state);
                 break;
             case HORIZONTAL:
-                drawLinearHorizontal(c, parent, state);
+                collectLinearHorizontal(c, parent, state);
                 break;
             case GRID:
-                drawGridVertical(c, parent,state);
-                drawGridHorizontal(c, parent,state);
+                collectGridVertical(c, parent,state);
+                collectGridHorizontal(c, parent,state);
                 break;
         }
+        flushDivider(c);
     }
 
-
     public void drawLinearVertical(Canvas c, RecyclerView parent, RecyclerView.State state) {
+        collectLinearVertical(c, parent, state);
+        flushDivider(c);
+    }
+
+    public void drawLinearHorizontal(Canvas c, RecyclerView parent, RecyclerView.State state) {
+        collectLinearHorizontal(c, parent, state);
+        flushDivider(c);
+    }
+
+    public void drawGridVertical(Canvas c, RecyclerView parent, RecyclerView.State state) {
+        collectGridVertical(c, parent, state);
+        flushDivider(c);
+    }
+
+    public void drawGridHorizontal(Canvas c, RecyclerView parent, RecyclerView.State state) {
+        collectGridHorizontal(c, parent, state);
+        flushDivider(c);
+    }
+
+    /**
+     * 添加一条分隔线,ColorDrawable时放入缓冲区,否则直接绘制
+     * 分隔线一边宽度固定为strokeWidth,以中线表示
+     */
+    private void addDivider(Canvas c, RecyclerView parent, int left, int top, int right, int bottom) {
+        //空或完全在RecyclerView之外
+        if (left >= right || top >= bottom || right <= 0 || bottom <= 0 || left >= parent.getWidth() || top >= parent.getHeight()) {
+            return;
+        }
+        if (drawable instanceof ColorDrawable) {
+            if (lines.length < lineCount + 4) {
+                float[] newLines = new float[lines.length * 2];
+                System.arraycopy(lines, 0, newLines, 0, lineCount);
+                lines = newLines;
+            }
+            if (right - left <= bottom - top) {
+                float x = (left + right) / 2f;
+                lines[lineCount++] = x;
+                lines[lineCount++] = top;
+                lines[lineCount++] = x;
+                lines[lineCount++] = bottom;
+            } else {
+                float y = (top + bottom) / 2f;
+                lines[lineCount++] = left;
+                lines[lineCount++] = y;
+                lines[lineCount++] = right;
+                lines[lineCount++] = y;
+            }
+        } else {
+            drawable.setBounds(left, top, right, bottom);
+            drawable.draw(c);
+        }
+    }
+
+    /**
+     * 一次绘制缓冲区内所有分隔线
+     */
+    private void flushDivider(Canvas c) {
+        if (0 < lineCount) {
+            linePaint.setColor(((ColorDrawable) drawable).getColor());
+            linePaint.setStrokeWidth(strokeWidth);
+            c.drawLines(lines, 0, lineCount, linePaint);
+            lineCount = 0;
+        }
+    }
+
+
+    private void collectLinearVertical(Canvas c, RecyclerView parent, RecyclerView.State state) {
         final int left = parent.getPaddingLeft();
         final int right = parent.getWidth() - parent.getPaddingRight();
 
@@ -115,13 +193,12 @@ public class SimpleItemDecoration extends RecyclerView.ItemDecoration {
                         .getLayoutParams();
                 final int top = child.getBottom() + params.bottomMargin;
                 final int bottom = top + strokeWidth;
-                drawable.setBounds(left + verticalPadding, top, right - verticalPadding, bottom);
-                drawable.draw(c);
+                addDivider(c, parent, left + verticalPadding, top, right - verticalPadding, bottom);
             }
         }
     }
 
-    public void drawLinearHorizontal(Canvas c, RecyclerView parent, RecyclerView.State state) {
+    private void collectLinearHorizontal(Canvas c, RecyclerView parent, RecyclerView.State state) {
         final int top = parent.getPaddingTop();
         final int bottom = parent.getHeight() - parent.getPaddingBottom();
 
@@ -135,15 +212,15 @@ public class SimpleItemDecoration extends RecyclerView.ItemDecoration {
                         .getLayoutParams();
                 final int left = child.getRight() + params.rightMargin;
                 final int right = left + strokeWidth;
-                drawable.setBounds(left, top + horizontalPadding, right, bottom - horizontalPadding);
-                drawable.draw(c);
+                addDivider(c, parent, left, top + horizontalPadding, right, bottom - horizontalPadding);
             }
         }
     }
 
 
-    public void drawGridVertical(Canvas c, RecyclerView parent, RecyclerView.State state) {
+    private void collectGridVertical(Canvas c, RecyclerView parent, RecyclerView.State state) {
         int strokeWidth = this.strokeWidth;
+        RecyclerView.LayoutManager layoutManager = parent.getLayoutManager();
         int itemCount = state.getItemCount();
         final int childCount = parent.getChildCount();
         for (int i = 0; i < childCount; i++) {
@@ -156,21 +233,21 @@ public class SimpleItemDecoration extends RecyclerView.ItemDecoration {
                 int right = child.getLeft() - layoutParams.leftMargin;
                 int top = child.getTop() + layoutParams.topMargin-strokeWidth;
                 int bottom = child.getBottom() + layoutParams.bottomMargin+strokeWidth;
-                drawable.setBounds(left, top, right, bottom);
-                drawable.draw(c);
-                //绘右侧
+                addDivider(c, parent, left, top, right, bottom);
+                //绘右侧,右侧偏移不足一条分隔线时,与右侧条目共用其左侧分隔线
+                if(layoutManager.getRightDecorationWidth(child)<strokeWidth) continue;
                 left = child.getRight() + layoutParams.rightMargin;
                 right = child.getRight() + layoutParams.rightMargin+strokeWidth;
                 top = child.getTop() + layoutParams.topMargin-strokeWidth;
                 bottom = child.getBottom() + layoutParams.bottomMargin+strokeWidth;
-                drawable.setBounds(left, top, right, bottom);
-                drawable.draw(c);
+                addDivider(c, parent, left, top, right, bottom);
             }
         }
     }
 
-    public void drawGridHorizontal(Canvas c, RecyclerView parent, RecyclerView.State state) {
+    private void collectGridHorizontal(Canvas c, RecyclerView parent, RecyclerView.State state) {
         int strokeWidth = this.strokeWidth;
+        RecyclerView.LayoutManager layoutManager = parent.getLayoutManager();
         final int childCount = parent.getChildCount();
         int itemCount = state.getItemCount();
         for (int i = 0; i < childCount; i++) {
@@ -178,20 +255,18 @@ public class SimpleItemDecoration extends RecyclerView.ItemDecoration {
             final RecyclerView.LayoutParams layoutParams = (RecyclerView.LayoutParams) child.getLayoutParams();
             int itemPosition = layoutParams.getViewLayoutPosition();
             if(needDraw(itemCount,itemPosition)) {
-                //绘上边
-                int left = child.getLeft() ;
+                int left = child.getLeft();
                 int right = child.getRight();
-                int top = child.getTop() - layoutParams.topMargin - strokeWidth;
-                int bottom = child.getTop() - layoutParams.topMargin;
-                drawable.setBounds(left, top, right, bottom);
-                drawable.draw(c);
+                //绘上边,无上偏移时与上一行共用其下边分隔线
+                if(0<layoutManager.getTopDecorationHeight(child)){
+                    int top = child.getTop() - layoutParams.topMargin - strokeWidth;
+                    int bottom = child.getTop() - layoutParams.topMargin;
+                    addDivider(c, parent, left, top, right, bottom);
+                }
                 //绘下边
-                left = child.getLeft();
-                right = child.getRight();
-                top = child.getBottom() + layoutParams.bottomMargin;
-                bottom = child.getBottom() + layoutParams.bottomMargin + strokeWidth;
-                drawable.setBounds(left, top, right, bottom);
-                drawable.draw(c);
+                int top = child.getBottom() + layoutParams.bottomMargin;
+                int bottom = child.getBottom() + layoutParams.bottomMargin + strokeWidth;
+                addDivider(c, parent, left, top, right, bottom);
             }
         }
     }
@@ -224,6 +299,9 @@ public class SimpleItemDecoration extends RecyclerView.ItemDecoration {
                         if (spanSize == spanCount) {
                             outRect.set(0, 0, 0, 0);
                             return;
+                        } else if (sizeLookup instanceof CachedSpanSizeLookup) {
+                            setGridItemOffsets(outRect, (CachedSpanSizeLookup) sizeLookup, itemPosition, spanSize, spanCount);
+                            return;
                         }
                     }
                     outRect.set(strokeWidth, strokeWidth, strokeWidth, strokeWidth);
@@ -232,6 +310,24 @@ public class SimpleItemDecoration extends RecyclerView.ItemDecoration {
         }
     }
 
+    /**
+     * 按列角标均分左右偏移,使每列宽度一致且相邻列间距为一条分隔线
+     * 左偏移+右偏移=strokeWidth*(spanCount+1)/spanCount,首列左侧/末列右侧为strokeWidth
+     * 每行首个条目之前为整行条目(或无条目)时为首行,添加上偏移
+     */
+    private void setGridItemOffsets(Rect outRect, CachedSpanSizeLookup sizeLookup, int itemPosition, int spanSize, int spanCount) {
+        int strokeWidth = this.strokeWidth;
+        int spanIndex = sizeLookup.getSpanIndex(itemPosition, spanCount);
+        int left = strokeWidth - spanIndex * strokeWidth / spanCount;
+        int right = (spanIndex + spanSize) * strokeWidth / spanCount;
+        int previousPosition = sizeLookup.getRowStartPosition(itemPosition, spanCount) - 1;
+        int top = 0;
+        if (0 > previousPosition || spanCount == sizeLookup.getSpanSize(previousPosition)) {
+            top = strokeWidth;
+        }
+        outRect.set(left, top, right, strokeWidth);
+    }
+
     /**
      * 是否需要绘制
      *
@@ -246,7 +342,6 @@ public class SimpleItemDecoration extends RecyclerView.ItemDecoration {
         } else if (footerCount >= itemCount - itemPosition) {
             result = showFooter;
         }
-        Log.i(TAG,"headerCount:"+headerCount+" footerCount:"+footerCount+" itemPosition:"+itemPosition+" result:"+result);
         return result;
     }
 
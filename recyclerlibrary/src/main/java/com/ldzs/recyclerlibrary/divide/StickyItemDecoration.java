@@ -0,0 +1,189 @@
+package com.ldzs.recyclerlibrary.divide;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Rect;
+import android.support.v7.widget.RecyclerView;
+import android.view.View;
+import android.view.ViewGroup;
+
+import com.ldzs.recyclerlibrary.adapter.drag.DynamicAdapter;
+import com.ldzs.recyclerlibrary.callback.StickyCallback;
+import com.ldzs.recyclerlibrary.strategy.GroupingStrategy;
+
+/**
+ * 只绘制的Sticky效果
+ * StickyView不加入布局,每个分组绑定后只绘制一次到位图内缓存,滑动时只绘制位图,无测量/布局
+ * 缓存按分组序号保存当前/上一个/下一个分组,数据变化时由外部调用invalidate失效
+ * 点击由isStickyHit判断,见PullToRefreshStickyRecyclerView
+ */
+public class StickyItemDecoration extends RecyclerView.ItemDecoration {
+    private static final String TAG = "StickyItemDecoration";
+    private static final int CACHE_SIZE = 3;
+    private final View stickyView;
+    private final StickyCallback callback;
+    private final Bitmap[] bitmaps = new Bitmap[CACHE_SIZE];
+    private final int[] ordinals = new int[CACHE_SIZE];
+    private final Rect stickyRect = new Rect();//当前绘制区域,用于点击判断
+    private int nextIndex;//下一个替换缓存角标
+    private int drawOrdinal;//当前绘制分组序号
+    private int boundOrdinal;//stickyView当前绑定分组序号,绘制己缓存位图的分组时可能与drawOrdinal不同
+
+    public StickyItemDecoration(View stickyView, StickyCallback callback) {
+        this.stickyView = stickyView;
+        this.callback = callback;
+        invalidate();
+    }
+
+    /**
+     * 分组数据变化后,所有缓存位图失效
+     */
+    public void invalidate() {
+        for (int i = 0; i < CACHE_SIZE; i++) {
+            ordinals[i] = RecyclerView.NO_POSITION;
+        }
+        drawOrdinal = RecyclerView.NO_POSITION;
+        boundOrdinal = RecyclerView.NO_POSITION;
+    }
+
+    /**
+     * 获得绑定当前绘制分组的StickyView,用于点击分发,绑定的不是绘制分组时重新绑定
+     *
+     * @param parent
+     * @return 未绘制时返回null
+     */
+    public View getStickyView(RecyclerView parent) {
+        if (RecyclerView.NO_POSITION == drawOrdinal) return null;
+        if (drawOrdinal != boundOrdinal) {
+            bindStickyView(parent, drawOrdinal);
+        }
+        return stickyView;
+    }
+
+    /**
+     * 获得当前绘制区域
+     *
+     * @param outRect
+     */
+    public void getStickyRect(Rect outRect) {
+        outRect.set(stickyRect);
+    }
+
+    /**
+     * 判断坐标是否在当前绘制的StickyView范围内
+     *
+     * @param x
+     * @param y
+     * @return
+     */
+    public boolean isStickyHit(float x, float y) {
+        return !stickyRect.isEmpty() && stickyRect.contains((int) x, (int) y);
+    }
+
+    @Override
+    public void onDrawOver(Canvas c, RecyclerView parent, RecyclerView.State state) {
+        super.onDrawOver(c, parent, state);
+        stickyRect.setEmpty();
+        RecyclerView.Adapter adapter = parent.getAdapter();
+        int childCount = parent.getChildCount();
+        if (null == adapter || 0 == childCount || 0 >= parent.getWidth()) return;
+        //第一个子条目位置,位于头部时不绘制
+        int position = RecyclerView.NO_POSITION;
+        for (int i = 0; i < childCount && RecyclerView.NO_POSITION == position; i++) {
+            int adapterPosition = parent.getChildAdapterPosition(parent.getChildAt(i));
+            if (0 == i && adapter instanceof DynamicAdapter && adapterPosition < ((DynamicAdapter) adapter).getHeaderViewCount()) {
+                return;
+            }
+            position = toChildPosition(adapter, adapterPosition);
+        }
+        if (RecyclerView.NO_POSITION == position) return;
+        GroupingStrategy groupingStrategy = callback.getGroupingStrategy();
+        int ordinal = Math.max(0, groupingStrategy.groupOrdinal(position));
+        Bitmap bitmap = obtainBitmap(parent, ordinal);
+        if (null == bitmap) return;
+        int top = 0;
+        //下一分组条目顶到StickyView时,整体上移
+        int nextPosition = groupingStrategy.nextGroupStart(position);
+        if (RecyclerView.NO_POSITION != nextPosition) {
+            RecyclerView.ViewHolder holder = parent.findViewHolderForAdapterPosition(toGlobalPosition(adapter, nextPosition));
+            if (null != holder && holder.itemView.getTop() < bitmap.getHeight()) {
+                top = holder.itemView.getTop() - bitmap.getHeight();
+            }
+        }
+        //测量宽度己除去左右内边距
+        int left = parent.getPaddingLeft();
+        c.drawBitmap(bitmap, left, top, null);
+        stickyRect.set(left, top, left + bitmap.getWidth(), top + bitmap.getHeight());
+        drawOrdinal = ordinal;
+    }
+
+    /**
+     * 获得分组对应位图,未缓存时绑定并绘制
+     *
+     * @param parent
+     * @param ordinal
+     * @return
+     */
+    private Bitmap obtainBitmap(RecyclerView parent, int ordinal) {
+        for (int i = 0; i < CACHE_SIZE; i++) {
+            if (ordinal == ordinals[i]) {
+                return bitmaps[i];
+            }
+        }
+        int index = nextIndex;
+        nextIndex = (nextIndex + 1) % CACHE_SIZE;
+        bindStickyView(parent, ordinal);
+        int width = stickyView.getMeasuredWidth();
+        int height = stickyView.getMeasuredHeight();
+        Bitmap bitmap = bitmaps[index];
+        if (0 >= width || 0 >= height) {
+            bitmap = null;
+        } else if (null == bitmap || bitmap.getWidth() != width || bitmap.getHeight() != height) {
+            bitmap = Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
+        } else {
+            bitmap.eraseColor(Color.TRANSPARENT);
+        }
+        if (null != bitmap) {
+            stickyView.draw(new Canvas(bitmap));
+        }
+        bitmaps[index] = bitmap;
+        ordinals[index] = ordinal;
+        return bitmap;
+    }
+
+    private void bindStickyView(RecyclerView parent, int ordinal) {
+        callback.initStickyView(stickyView, callback.getGroupingStrategy().getOriginalIndex(ordinal));
+        measureStickyView(parent);
+        boundOrdinal = ordinal;
+    }
+
+    private void measureStickyView(RecyclerView parent) {
+        int width = parent.getWidth() - parent.getPaddingLeft() - parent.getPaddingRight();
+        ViewGroup.LayoutParams layoutParams = stickyView.getLayoutParams();
+        int heightMeasureSpec;
+        if (null != layoutParams && 0 < layoutParams.height) {
+            heightMeasureSpec = View.MeasureSpec.makeMeasureSpec(layoutParams.height, View.MeasureSpec.EXACTLY);
+        } else {
+            heightMeasureSpec = View.MeasureSpec.makeMeasureSpec(0, View.MeasureSpec.UNSPECIFIED);
+        }
+        stickyView.measure(View.MeasureSpec.makeMeasureSpec(width, View.MeasureSpec.EXACTLY), heightMeasureSpec);
+        stickyView.layout(0, 0, stickyView.getMeasuredWidth(), stickyView.getMeasuredHeight());
+    }
+
+    private int toChildPosition(RecyclerView.Adapter adapter, int position) {
+        int childPosition = position;
+        if (adapter instanceof DynamicAdapter) {
+            childPosition = ((DynamicAdapter) adapter).toChildPosition(position);
+        }
+        return childPosition;
+    }
+
+    private int toGlobalPosition(RecyclerView.Adapter adapter, int position) {
+        int globalPosition = position;
+        if (adapter instanceof DynamicAdapter) {
+            globalPosition = ((DynamicAdapter) adapter).toGlobalPosition(position);
+        }
+        return globalPosition;
+    }
+}
@@ -18,32 +18,32 @@ public class DynamicAdapterDataObserve extends RecyclerView.AdapterDataObserver
 
     @Override
     public void onChanged() {
-        dynamicAdapter.notifyDataSetChanged();
+        dynamicAdapter.childChanged();
     }
 
 
     @Override
     public void onItemRangeInserted(int positionStart, int itemCount) {
-        dynamicAdapter.itemRangeInsert(dynamicAdapter.getStartIndex(positionStart)+positionStart,itemCount);
+        dynamicAdapter.childItemRangeInserted(positionStart,itemCount);
     }
 
     @Override
     public void onItemRangeChanged(int positionStart, int itemCount) {
-        dynamicAdapter.notifyItemRangeChanged(dynamicAdapter.getStartIndex(positionStart) + positionStart, itemCount);
+        dynamicAdapter.childItemRangeChanged(positionStart, itemCount, null);
     }
 
     @Override
     public void onItemRangeChanged(int positionStart, int itemCount, Object payload) {
-        dynamicAdapter.notifyItemRangeChanged(dynamicAdapter.getStartIndex(positionStart) + positionStart, itemCount, payload);
+        dynamicAdapter.childItemRangeChanged(positionStart, itemCount, payload);
     }
 
     @Override
     public void onItemRangeRemoved(int positionStart, int itemCount) {
-        dynamicAdapter.itemRangeRemoved(dynamicAdapter.getStartIndex(positionStart) +positionStart,itemCount);
+        dynamicAdapter.childItemRangeRemoved(positionStart,itemCount);
     }
 
     @Override
     public void onItemRangeMoved(int fromPosition, int toPosition, int itemCount) {
-        dynamicAdapter.notifyItemMoved(dynamicAdapter.getStartIndex(fromPosition) + fromPosition, dynamicAdapter.getStartIndex(toPosition)+toPosition);
+        dynamicAdapter.childItemRangeMoved(fromPosition, toPosition, itemCount);
     }
 }
\ No newline at end of file
@@ -0,0 +1,72 @@
+package com.ldzs.recyclerlibrary.select;
+
+import java.util.AbstractList;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * 区间集的只读位置列表视图
+ * 不展开区间,随区间集变化,需保存时复制
+ * size/contains不遍历位置,顺序遍历每个位置O(1),get(index)为O(r),r为区间个数
+ */
+public class IntervalList extends AbstractList<Integer> {
+    private final IntervalSet ranges;
+
+    public IntervalList(IntervalSet ranges) {
+        this.ranges = ranges;
+    }
+
+    @Override
+    public int size() {
+        return ranges.size();
+    }
+
+    @Override
+    public Integer get(int index) {
+        if (0 <= index) {
+            for (int i = 0; i < ranges.getRangeCount(); i++) {
+                int length = ranges.getEnd(i) - ranges.getStart(i);
+                if (index < length) {
+                    return ranges.getStart(i) + index;
+                }
+                index -= length;
+            }
+        }
+        throw new IndexOutOfBoundsException("index out of bounds!");
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        return o instanceof Integer && ranges.contains((Integer) o);
+    }
+
+    @Override
+    public Iterator<Integer> iterator() {
+        return new Iterator<Integer>() {
+            private int rangeIndex;
+            private int position = 0 < ranges.getRangeCount() ? ranges.getStart(0) : 0;
+
+            @Override
+            public boolean hasNext() {
+                return rangeIndex < ranges.getRangeCount();
+            }
+
+            @Override
+            public Integer next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                int value = position++;
+                if (position >= ranges.getEnd(rangeIndex) && ++rangeIndex < ranges.getRangeCount()) {
+                    position = ranges.getStart(rangeIndex);
+                }
+                return value;
+            }
+
+            @Override
+            public void remove() {
+                throw new UnsupportedOperationException();
+            }
+        };
+    }
+}
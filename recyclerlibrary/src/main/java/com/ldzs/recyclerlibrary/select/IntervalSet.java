@@ -0,0 +1,305 @@
+package com.ldzs.recyclerlibrary.select;
+
+/**
+ * 区间选中集
+ * 以有序/不相交/不相邻的左闭右开区间[start,end)表示位置集合,全选/反选/范围选择只改变少量区间,不逐个保存位置
+ * 查询为二分查找O(log r),添加/移除为二分定位后数组移动,r为区间个数
+ */
+public class IntervalSet {
+    private static final int DEFAULT_CAPACITY = 8;
+    private int[] starts;
+    private int[] ends;
+    private int count;
+    private int positionCount;//位置个数,随区间替换维护
+
+    public IntervalSet() {
+        starts = new int[DEFAULT_CAPACITY];
+        ends = new int[DEFAULT_CAPACITY];
+    }
+
+    public IntervalSet(IntervalSet other) {
+        int capacity = Math.max(DEFAULT_CAPACITY, other.count);
+        starts = new int[capacity];
+        ends = new int[capacity];
+        System.arraycopy(other.starts, 0, starts, 0, other.count);
+        System.arraycopy(other.ends, 0, ends, 0, other.count);
+        count = other.count;
+        positionCount = other.positionCount;
+    }
+
+    /**
+     * @return 区间个数
+     */
+    public int getRangeCount() {
+        return count;
+    }
+
+    public int getStart(int index) {
+        return starts[index];
+    }
+
+    /**
+     * @return 区间结束位置(不包含)
+     */
+    public int getEnd(int index) {
+        return ends[index];
+    }
+
+    public boolean isEmpty() {
+        return 0 == count;
+    }
+
+    /**
+     * @return 集合内位置个数,O(1)
+     */
+    public int size() {
+        return positionCount;
+    }
+
+    public boolean contains(int position) {
+        int index = upperBound(starts, position) - 1;
+        return 0 <= index && position < ends[index];
+    }
+
+    public void clear() {
+        count = 0;
+        positionCount = 0;
+    }
+
+    /**
+     * 并入区间[start,end)
+     */
+    public void add(int start, int end) {
+        if (start >= end) return;
+        //首个结束位置>=start的区间,至最后一个起始位置<=end的区间,均与新区间相交或相邻
+        int lo = lowerBound(ends, start);
+        int hi = upperBound(starts, end) - 1;
+        if (lo > hi) {
+            replace(lo, hi, start, end, 0, 0, 1);
+        } else {
+            replace(lo, hi, Math.min(start, starts[lo]), Math.max(end, ends[hi]), 0, 0, 1);
+        }
+    }
+
+    /**
+     * 移除区间[start,end)
+     */
+    public void remove(int start, int end) {
+        if (start >= end) return;
+        int lo = upperBound(ends, start);
+        int hi = lowerBound(starts, end) - 1;
+        if (lo > hi) return;
+        int leftStart = starts[lo], rightEnd = ends[hi];
+        if (leftStart < start && end < rightEnd) {
+            replace(lo, hi, leftStart, start, end, rightEnd, 2);
+        } else if (leftStart < start) {
+            replace(lo, hi, leftStart, start, 0, 0, 1);
+        } else if (end < rightEnd) {
+            replace(lo, hi, end, rightEnd, 0, 0, 1);
+        } else {
+            replace(lo, hi, 0, 0, 0, 0, 0);
+        }
+    }
+
+    /**
+     * 切换单个位置
+     *
+     * @return 切换后是否包含
+     */
+    public boolean toggle(int position) {
+        if (contains(position)) {
+            remove(position, position + 1);
+            return false;
+        }
+        add(position, position + 1);
+        return true;
+    }
+
+    /**
+     * [start,end)范围内取反
+     */
+    public void invert(int start, int end) {
+        if (start >= end) return;
+        int lo = upperBound(ends, start);
+        int hi = lowerBound(starts, end) - 1;
+        //范围内补集区间,最多比原区间多一个
+        int size = Math.max(0, hi - lo + 1) + 1;
+        int[] newStarts = new int[size];
+        int[] newEnds = new int[size];
+        int newCount = 0;
+        int position = start;
+        for (int i = lo; i <= hi; i++) {
+            if (position < starts[i]) {
+                newStarts[newCount] = position;
+                newEnds[newCount++] = starts[i];
+            }
+            position = ends[i];
+        }
+        if (position < end) {
+            newStarts[newCount] = position;
+            newEnds[newCount++] = end;
+        }
+        //remove只移除范围内部分,范围外部分保留
+        remove(start, end);
+        for (int i = 0; i < newCount; i++) {
+            add(newStarts[i], newEnds[i]);
+        }
+    }
+
+    /**
+     * 在position处插入count个位置,之后区间后移,跨越插入位置的区间被拆分,插入位置不包含
+     */
+    public void insert(int position, int count) {
+        if (0 >= count) return;
+        int index = upperBound(ends, position);
+        if (index < this.count && starts[index] < position) {
+            //拆分跨越插入位置的区间
+            int end = ends[index];
+            replace(index, index, starts[index], position, position, end, 2);
+            index++;
+        }
+        for (int i = index; i < this.count; i++) {
+            starts[i] += count;
+            ends[i] += count;
+        }
+    }
+
+    /**
+     * 移除[position,position+count)位置,之后区间前移
+     */
+    public void removeRange(int position, int count) {
+        if (0 >= count) return;
+        remove(position, position + count);
+        int index = lowerBound(starts, position + count);
+        for (int i = index; i < this.count; i++) {
+            starts[i] -= count;
+            ends[i] -= count;
+        }
+        //前移后与前一个区间相邻时合并
+        if (0 < index && index < this.count && ends[index - 1] == starts[index]) {
+            replace(index - 1, index, starts[index - 1], ends[index], 0, 0, 1);
+        }
+    }
+
+    /**
+     * 将[from,from+count)位置移动到移除后的toPosition处
+     */
+    public void move(int from, int to, int count) {
+        if (0 >= count || from == to) return;
+        IntervalSet moved = new IntervalSet();
+        int lo = upperBound(ends, from);
+        for (int i = lo; i < this.count && starts[i] < from + count; i++) {
+            moved.add(Math.max(from, starts[i]) - from + to, Math.min(from + count, ends[i]) - from + to);
+        }
+        removeRange(from, count);
+        insert(to, count);
+        for (int i = 0; i < moved.count; i++) {
+            add(moved.starts[i], moved.ends[i]);
+        }
+    }
+
+    /**
+     * 两集合对称差,即状态发生变化的位置
+     */
+    public static IntervalSet difference(IntervalSet a, IntervalSet b) {
+        //两集合边界点各自严格递增,按序合并,相同边界点抵消,余下边界点交替为起始/结束
+        IntervalSet result = new IntervalSet();
+        int i = 0, j = 0;
+        int aSize = a.count * 2, bSize = b.count * 2;
+        int start = -1;
+        while (i < aSize || j < bSize) {
+            int pa = i < aSize ? a.boundaryAt(i) : Integer.MAX_VALUE;
+            int pb = j < bSize ? b.boundaryAt(j) : Integer.MAX_VALUE;
+            int point;
+            if (pa == pb) {
+                i++;
+                j++;
+                continue;
+            } else if (pa < pb) {
+                point = pa;
+                i++;
+            } else {
+                point = pb;
+                j++;
+            }
+            if (-1 == start) {
+                start = point;
+            } else {
+                result.add(start, point);
+                start = -1;
+            }
+        }
+        return result;
+    }
+
+    private int boundaryAt(int index) {
+        return 0 == (index & 1) ? starts[index >> 1] : ends[index >> 1];
+    }
+
+    /**
+     * 以至多2个新区间替换[lo,hi]区间,hi<lo时为插入到lo
+     */
+    private void replace(int lo, int hi, int s1, int e1, int s2, int e2, int newCount) {
+        int removeCount = Math.max(0, hi - lo + 1);
+        int size = count - removeCount + newCount;
+        for (int i = lo; i <= hi; i++) {
+            positionCount -= ends[i] - starts[i];
+        }
+        positionCount += (0 < newCount ? e1 - s1 : 0) + (1 < newCount ? e2 - s2 : 0);
+        if (starts.length < size) {
+            int capacity = Math.max(size, starts.length * 2);
+            int[] newStarts = new int[capacity];
+            int[] newEnds = new int[capacity];
+            System.arraycopy(starts, 0, newStarts, 0, count);
+            System.arraycopy(ends, 0, newEnds, 0, count);
+            starts = newStarts;
+            ends = newEnds;
+        }
+        int tail = lo + removeCount;
+        if (removeCount != newCount && tail < count) {
+            System.arraycopy(starts, tail, starts, lo + newCount, count - tail);
+            System.arraycopy(ends, tail, ends, lo + newCount, count - tail);
+        }
+        if (0 < newCount) {
+            starts[lo] = s1;
+            ends[lo] = e1;
+        }
+        if (1 < newCount) {
+            starts[lo + 1] = s2;
+            ends[lo + 1] = e2;
+        }
+        count = size;
+    }
+
+    /**
+     * 首个>=value的角标
+     */
+    private int lowerBound(int[] array, int value) {
+        int low = 0, high = count;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (array[mid] < value) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * 首个>value的角标
+     */
+    private int upperBound(int[] array, int value) {
+        int low = 0, high = count;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (array[mid] <= value) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+}
@@ -0,0 +1,149 @@
+package com.ldzs.recyclerlibrary.select;
+
+/**
+ * 选中集
+ * 以long为键的开放寻址散列表,键为条目稳定id(子Adapter无稳定id时为子条目位置),
+ * 查询/添加/删除均为O(1),全部使用基本类型,不产生装箱
+ */
+public class SelectionModel {
+    private static final int DEFAULT_CAPACITY = 16;//必须为2的幂
+    private long[] keys;
+    private boolean[] used;
+    private int size;
+
+    public SelectionModel() {
+        keys = new long[DEFAULT_CAPACITY];
+        used = new boolean[DEFAULT_CAPACITY];
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return 0 == size;
+    }
+
+    public boolean contains(long key) {
+        return 0 <= indexOf(key);
+    }
+
+    /**
+     * 添加选中键
+     *
+     * @param key
+     * @return 之前未选中时返回true
+     */
+    public boolean add(long key) {
+        int mask = keys.length - 1;
+        int index = hash(key) & mask;
+        while (used[index]) {
+            if (keys[index] == key) return false;
+            index = (index + 1) & mask;
+        }
+        keys[index] = key;
+        used[index] = true;
+        //装载因子超过0.5时扩容
+        if (++size * 2 > keys.length) {
+            resize(keys.length * 2);
+        }
+        return true;
+    }
+
+    /**
+     * 移除选中键
+     *
+     * @param key
+     * @return 之前选中时返回true
+     */
+    public boolean remove(long key) {
+        int index = indexOf(key);
+        if (0 > index) return false;
+        //后续同簇元素前移,保证线性探测不中断
+        int mask = keys.length - 1;
+        int hole = index;
+        int next = (hole + 1) & mask;
+        while (used[next]) {
+            int home = hash(keys[next]) & mask;
+            //home不在(hole,next]之间时,可前移至hole
+            if (hole <= next ? (home <= hole || home > next) : (home <= hole && home > next)) {
+                keys[hole] = keys[next];
+                hole = next;
+            }
+            next = (next + 1) & mask;
+        }
+        used[hole] = false;
+        size--;
+        return true;
+    }
+
+    /**
+     * 切换选中状态
+     *
+     * @param key
+     * @return 切换后是否选中
+     */
+    public boolean toggle(long key) {
+        if (remove(key)) {
+            return false;
+        }
+        add(key);
+        return true;
+    }
+
+    public void clear() {
+        if (0 < size) {
+            for (int i = 0; i < used.length; i++) {
+                used[i] = false;
+            }
+            size = 0;
+        }
+    }
+
+    /**
+     * @return 所有选中键,无序
+     */
+    public long[] toArray() {
+        long[] result = new long[size];
+        int index = 0;
+        for (int i = 0; i < keys.length; i++) {
+            if (used[i]) {
+                result[index++] = keys[i];
+            }
+        }
+        return result;
+    }
+
+    private int indexOf(long key) {
+        int mask = keys.length - 1;
+        int index = hash(key) & mask;
+        while (used[index]) {
+            if (keys[index] == key) return index;
+            index = (index + 1) & mask;
+        }
+        return -1;
+    }
+
+    private void resize(int capacity) {
+        long[] oldKeys = keys;
+        boolean[] oldUsed = used;
+        keys = new long[capacity];
+        used = new boolean[capacity];
+        int mask = capacity - 1;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldUsed[i]) {
+                int index = hash(oldKeys[i]) & mask;
+                while (used[index]) {
+                    index = (index + 1) & mask;
+                }
+                keys[index] = oldKeys[i];
+                used[index] = true;
+            }
+        }
+    }
+
+    private static int hash(long key) {
+        int h = (int) (key ^ (key >>> 32)) * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+}
@@ -0,0 +1,33 @@
+package com.ldzs.recyclerlibrary.select;
+
+import java.util.List;
+
+/**
+ * 选中状态变化局部更新标记
+ * SelectAdapter以此作为notifyItemChanged的payload,绑定时只回调Selectable#onSelectItem,不重新绑定子条目文字/图片
+ */
+public final class SelectionPayload {
+    public static final SelectionPayload INSTANCE = new SelectionPayload();
+
+    private SelectionPayload() {
+    }
+
+    /**
+     * payloads是否全部为选中状态变化
+     *
+     * @param payloads
+     * @return
+     */
+    public static boolean isSelectionOnly(List<Object> payloads) {
+        if (payloads.isEmpty()) return false;
+        for (int i = 0; i < payloads.size(); i++) {
+            if (INSTANCE != payloads.get(i)) return false;
+        }
+        return true;
+    }
+
+    @Override
+    public String toString() {
+        return "SelectionPayload";
+    }
+}
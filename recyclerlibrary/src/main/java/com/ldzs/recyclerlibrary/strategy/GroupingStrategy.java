@@ -1,5 +1,7 @@
 package com.ldzs.recyclerlibrary.strategy;
 
+import android.os.Handler;
+import android.os.Looper;
 import android.support.v7.widget.RecyclerView;
 
 import com.ldzs.recyclerlibrary.IRecyclerAdapter;
@@ -7,22 +9,42 @@ import com.ldzs.recyclerlibrary.adapter.BaseViewAdapter;
 import com.ldzs.recyclerlibrary.adapter.BaseViewAdapter2;
 import com.ldzs.recyclerlibrary.callback.BinaryCondition;
 import com.ldzs.recyclerlibrary.callback.Condition;
+import com.ldzs.recyclerlibrary.select.IntervalSet;
 
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.Executor;
 
 /**
  * Created by Administrator on 2017/5/20.
  * 分组策略
+ * 分组起始位置以有序int数组存储,另以位集标记,滑动/布局时查询无装箱无分配
+ * 1:isGroupIndex O(1)
+ * 2:getGroupStartIndex/nextGroupStart/groupOrdinal O(log n)
+ * 3:设置async后,整体刷新在工作线程对数据快照计算,完成后于主线程一次替换,计算期间仍使用旧分组,
+ * 以generation丢弃过期计算结果,替换后只通知分组起始状态改变的条目
+ * 4:增量变化使通知范围外的条目分组起始状态改变时(如移除A1后A2成为分组起始),通知这些条目重新绑定,条目内分组头随之更新
  */
 public class GroupingStrategy {
     private static final String TAG="GroupingStrategy";
     private final IRecyclerAdapter adapter;
-    private final List<Integer> indexItems;
-    private Integer[] indexArray;
+    private final RecyclerView.Adapter recyclerAdapter;
+    private static final int DEFAULT_CAPACITY = 16;
+    private int[] groupStarts;//分组起始位置,升序
+    private int groupCount;
+    private long[] groupBits;//分组起始位置位集
     private BinaryCondition binaryCondition;
     private Condition condition;
+    private Executor executor;
+    private Handler handler;
+    private int generation;//每次整体刷新加1
+    private int publishGeneration;//当前使用分组的generation
+    private final List<OnGroupChangedListener> groupChangedListeners;
+    private final IntervalSet flips;//分组起始状态改变且未被原通知覆盖的条目位置,当前坐标
+    private boolean observeLast;//最先注册的监听,通知时最后收到
+    private boolean flipPosted;
+    private boolean dispatching;//正在通知分组状态变化,忽略自身引起的更新/整体刷新通知
 
     public static<T> GroupingStrategy of(BaseViewAdapter<T> adapter){
         return new GroupingStrategy(adapter);
@@ -34,74 +56,129 @@ public class GroupingStrategy {
 
     public GroupingStrategy(BaseViewAdapter2 adapter){
         this.adapter=adapter;
-        this.indexItems=new ArrayList<>();
+        this.recyclerAdapter=adapter;
+        this.flips=new IntervalSet();
+        this.groupChangedListeners=new ArrayList<>();
+        this.groupStarts=new int[DEFAULT_CAPACITY];
+        this.groupBits=new long[0];
         registerAdapterDataObserver(adapter);
     }
 
     public GroupingStrategy(BaseViewAdapter adapter){
         this.adapter=adapter;
-        this.indexItems=new ArrayList<>();
+        this.recyclerAdapter=adapter;
+        this.flips=new IntervalSet();
+        this.groupChangedListeners=new ArrayList<>();
+        this.groupStarts=new int[DEFAULT_CAPACITY];
+        this.groupBits=new long[0];
         registerAdapterDataObserver(adapter);
     }
 
     /**
      * 注册数据适配器数据监听,时时同步映射角标集
+     * 只按变化范围增量维护,外部的精确通知原样到达RecyclerView,范围外分组起始状态改变的条目另行通知更新
+     * 注册前无其它监听时,本监听通知时最后收到(倒序分发),其它监听均已处理本次变化,可在监听内直接通知
      * @param adapter
      */
     private void registerAdapterDataObserver(final RecyclerView.Adapter adapter) {
-        //同步整个列表数据变化
-        adapter.setHasStableIds(true);
+        observeLast=!adapter.hasObservers();
         adapter.registerAdapterDataObserver(new RecyclerView.AdapterDataObserver() {
             @Override
             public void onItemRangeInserted(int positionStart, int itemCount) {
                 super.onItemRangeInserted(positionStart, itemCount);
-                refreshIndexItems();
-                adapter.notifyDataSetChanged();
+                itemRangeInserted(positionStart, itemCount);
             }
 
             @Override
             public void onItemRangeRemoved(int positionStart, int itemCount) {
                 super.onItemRangeRemoved(positionStart, itemCount);
-                refreshIndexItems();
-                adapter.notifyDataSetChanged();
+                itemRangeRemoved(positionStart, itemCount);
             }
 
             @Override
             public void onItemRangeMoved(int fromPosition, int toPosition, int itemCount) {
                 super.onItemRangeMoved(fromPosition, toPosition, itemCount);
-                refreshIndexItems();
-                adapter.notifyDataSetChanged();
+                itemRangeMoved(fromPosition, toPosition, itemCount);
             }
 
             @Override
             public void onChanged() {
                 super.onChanged();
-                refreshIndexItems();
+                //回调内的整体刷新只重新绑定,数据未变,不再重新计算
+                if(!dispatching){
+                    flips.clear();
+                    refreshIndexItems(false);
+                }
             }
 
             @Override
             public void onItemRangeChanged(int positionStart, int itemCount, Object payload) {
                 super.onItemRangeChanged(positionStart, itemCount, payload);
-                refreshIndexItems();
+                if(!dispatching){
+                    itemRangeChanged(positionStart, itemCount);
+                }
             }
         });
     }
 
+    /**
+     * 设置异步计算,整体刷新(设置条件/notifyDataSetChanged)时在executor内计算分组
+     * @param executor 为null时同步计算
+     * @return
+     */
+    public GroupingStrategy async(Executor executor){
+        this.executor=executor;
+        if(null!=executor){
+            obtainHandler();
+        }
+        return this;
+    }
+
+    /**
+     * 分组变化后回调:整体替换,或增量变化涉及分组起始条目时
+     * 分组起始状态改变的条目己由策略通知重新绑定,回调内无需notifyDataSetChanged
+     * @param listener
+     */
+    public void addOnGroupChangedListener(OnGroupChangedListener listener){
+        if(null!=listener&&!groupChangedListeners.contains(listener)){
+            groupChangedListeners.add(listener);
+        }
+    }
+
+    public void removeOnGroupChangedListener(OnGroupChangedListener listener){
+        groupChangedListeners.remove(listener);
+    }
+
+    /**
+     * 是否有未完成的异步计算
+     * @return
+     */
+    public boolean isComputing(){
+        return publishGeneration!=generation;
+    }
+
     public<I> GroupingStrategy reduce(BinaryCondition<I> binaryCondition){
         this.binaryCondition =binaryCondition;
-        refreshIndexItems();
+        refreshIndexItems(true);
         return this;
     }
 
     public<I> GroupingStrategy reduce(Condition<I> condition){
         this.condition =condition;
-        refreshIndexItems();
+        refreshIndexItems(true);
         return this;
     }
 
+    /**
+     * 是否为分组起始位置,O(1)
+     * @param position
+     * @return
+     */
     public boolean isGroupIndex(int position){
-        return 0<=Arrays.binarySearch(getIndexArray(),position);
+        int word=position>>>6;
+        return 0<=position&&word<groupBits.length&&0!=(groupBits[word]&(1L<<position));
     }
+
     /**
      * 使用二分查找法,根据position找到数位中该段位的位置
      * @return
@@ -109,8 +186,8 @@ public class GroupingStrategy {
     public int getGroupStartIndex(int position){
         int index=0;
         int start = getStartIndex(position);
-        if(-1<start&&start<indexItems.size()){
-            index=indexItems.get(start);
+        if(start<groupCount){
+            index=groupStarts[start];
         }
         return index;
     }
@@ -122,8 +199,8 @@ public class GroupingStrategy {
      */
     public int getOriginalIndex(int index){
         int position=0;
-        if(-1<index&&index<indexItems.size()){
-            position=indexItems.get(index);
+        if(-1<index&&index<groupCount){
+            position=groupStarts[index];
         }
         return position;
     }
@@ -134,65 +211,439 @@ public class GroupingStrategy {
      * @return
      */
     public int getStartIndex(int position){
-        int start = 0, end = indexItems.size();
-        while (end - start > 1) {
-            // 中间位置
-            int middle = (start + end) >> 1;
-            // 中值
-            int middleValue = indexItems.get(middle);
-            if (position > middleValue) {
-                start = middle;
-            } else if (position < middleValue) {
-                end = middle;
+        return Math.max(0, groupOrdinal(position));
+    }
+
+    /**
+     * position所在分组序号,如映射位置为 0 13 25 给定14 返回1,位于第一个分组之前返回-1
+     * @param position
+     * @return
+     */
+    public int groupOrdinal(int position){
+        return lowerBound(position+1)-1;
+    }
+
+    /**
+     * position之后的下一个分组起始位置,如映射位置为 0 13 25 给定13 返回25,不存在返回NO_POSITION
+     * @param position
+     * @return
+     */
+    public int nextGroupStart(int position){
+        int index=lowerBound(position+1);
+        return index<groupCount?groupStarts[index]:RecyclerView.NO_POSITION;
+    }
+
+    public int getGroupCount(){
+        return groupCount;
+    }
+
+    /**
+     * 条目插入:之后的分组位置整体后移,只重新判断插入范围
+     * 相邻比较条件下,插入范围之后第一个条目的前一条目己改变,一并重新判断
+     * @param positionStart
+     * @param itemCount
+     */
+    void itemRangeInserted(int positionStart, int itemCount){
+        flips.insert(positionStart, itemCount);
+        if(!hasCondition()) return;
+        offsetIndexItems(positionStart, itemCount);
+        boolean changed=reevaluate(positionStart, null==binaryCondition?positionStart+itemCount:positionStart+itemCount+1, positionStart, positionStart+itemCount);
+        refreshBits(positionStart);
+        dispatchFlips();
+        dispatchGroupChanged(changed);
+        restartComputing();
+    }
+
+    /**
+     * 条目移除:移除范围内的分组位置,之后的整体前移
+     * 相邻比较条件下,移除位置的条目前一条目己改变,重新判断
+     * @param positionStart
+     * @param itemCount
+     */
+    void itemRangeRemoved(int positionStart, int itemCount){
+        flips.removeRange(positionStart, itemCount);
+        if(!hasCondition()) return;
+        int fromIndex=lowerBound(positionStart);
+        int toIndex=lowerBound(positionStart+itemCount);
+        boolean changed=fromIndex<toIndex;
+        removeGroups(fromIndex, toIndex);
+        offsetIndexItems(positionStart+itemCount, -itemCount);
+        if(null!=binaryCondition){
+            changed|=reevaluate(positionStart, positionStart+1, positionStart, positionStart);
+        }
+        refreshBits(positionStart);
+        dispatchFlips();
+        dispatchGroupChanged(changed);
+        restartComputing();
+    }
+
+    /**
+     * 条目移动:只有移动经过的范围内条目位置改变,重新判断该范围
+     * 移动不会重新绑定条目,范围内状态改变的条目均需通知
+     * @param fromPosition
+     * @param toPosition
+     * @param itemCount
+     */
+    void itemRangeMoved(int fromPosition, int toPosition, int itemCount){
+        flips.move(fromPosition, toPosition, itemCount);
+        if(!hasCondition()) return;
+        int positionStart=Math.min(fromPosition, toPosition);
+        int count=Math.abs(fromPosition-toPosition)+itemCount;
+        moveIndexItems(fromPosition, toPosition, itemCount, positionStart, positionStart+count);
+        boolean changed=reevaluate(positionStart, null==binaryCondition?positionStart+count:positionStart+count+1, positionStart, positionStart);
+        refreshBits(positionStart);
+        dispatchFlips();
+        dispatchGroupChanged(changed);
+        restartComputing();
+    }
+
+    /**
+     * 条目更新:只重新判断更新范围,相邻比较时包含范围之后一个条目
+     * @param positionStart
+     * @param itemCount
+     */
+    void itemRangeChanged(int positionStart, int itemCount){
+        if(!hasCondition()) return;
+        boolean changed=reevaluate(positionStart, null==binaryCondition?positionStart+itemCount:positionStart+itemCount+1, positionStart, positionStart+itemCount);
+        refreshBits(positionStart);
+        dispatchFlips();
+        dispatchGroupChanged(changed);
+        restartComputing();
+    }
+
+    /**
+     * 通知分组起始状态改变的条目重新绑定
+     * 本监听最后收到通知时直接通知,否则其它监听可能尚未处理本次变化,待本次通知完成后在主线程通知,期间的变化由flips偏移
+     */
+    private void dispatchFlips(){
+        if(flips.isEmpty()) return;
+        if(observeLast){
+            flushFlips();
+        } else if(!flipPosted){
+            flipPosted=true;
+            obtainHandler().post(new Runnable() {
+                @Override
+                public void run() {
+                    flipPosted=false;
+                    flushFlips();
+                }
+            });
+        }
+    }
+
+    private void flushFlips(){
+        IntervalSet ranges=new IntervalSet(flips);
+        flips.clear();
+        int itemCount=recyclerAdapter.getItemCount();
+        boolean lastDispatching=dispatching;
+        dispatching=true;
+        try {
+            for(int i=0;i<ranges.getRangeCount();i++){
+                int start=ranges.getStart(i);
+                int end=Math.min(ranges.getEnd(i), itemCount);
+                if(start<end){
+                    recyclerAdapter.notifyItemRangeChanged(start, end-start);
+                }
+            }
+        } finally {
+            dispatching=lastDispatching;
+        }
+    }
+
+    /**
+     * 回调分组变化,回调内引起的整体刷新通知不再重新计算
+     * @param changed 是否涉及分组起始条目
+     */
+    private void dispatchGroupChanged(boolean changed){
+        if(!changed||groupChangedListeners.isEmpty()) return;
+        boolean lastDispatching=dispatching;
+        dispatching=true;
+        try {
+            for(int i=groupChangedListeners.size()-1;i>=0;i--){
+                groupChangedListeners.get(i).onGroupChanged(this);
+            }
+        } finally {
+            dispatching=lastDispatching;
+        }
+    }
+
+    private Handler obtainHandler(){
+        if(null==handler){
+            handler=new Handler(Looper.getMainLooper());
+        }
+        return handler;
+    }
+
+    /**
+     * 增量修改后,正在进行的异步计算基于旧快照,己过期,重新计算
+     */
+    private void restartComputing(){
+        if(isComputing()){
+            refreshIndexItems(true);
+        }
+    }
+
+    private boolean hasCondition(){
+        return null!=binaryCondition||null!=condition;
+    }
+
+    /**
+     * 位置大于等于position的分组位置整体偏移
+     * @param position
+     * @param offset
+     */
+    private void offsetIndexItems(int position, int offset){
+        for(int i=lowerBound(position);i<groupCount;i++){
+            groupStarts[i]+=offset;
+        }
+    }
+
+    /**
+     * 移动经过的[start,end)范围内分组位置换算为移动后位置
+     */
+    private void moveIndexItems(int fromPosition, int toPosition, int itemCount, int start, int end){
+        int fromIndex=lowerBound(start);
+        int toIndex=lowerBound(end);
+        for(int i=fromIndex;i<toIndex;i++){
+            int position=groupStarts[i];
+            if(fromPosition<=position&&position<fromPosition+itemCount){
+                position+=toPosition-fromPosition;
+            } else {
+                if(position>=fromPosition+itemCount){
+                    position-=itemCount;
+                }
+                if(position>=toPosition){
+                    position+=itemCount;
+                }
+            }
+            groupStarts[i]=position;
+        }
+        Arrays.sort(groupStarts, fromIndex, toIndex);
+    }
+
+    /**
+     * 重新判断[start,end)范围内条目是否为分组起始,[notifiedStart,notifiedEnd)外状态改变的条目记录到flips
+     * @param start
+     * @param end
+     * @param notifiedStart 原通知会重新绑定的范围
+     * @param notifiedEnd
+     * @return 范围内变化前后是否有分组起始条目
+     */
+    private boolean reevaluate(int start, int end, int notifiedStart, int notifiedEnd){
+        List items = adapter.getItems();
+        end=Math.min(end, items.size());
+        if(start>=end) return false;
+        int index=lowerBound(start);
+        int endIndex=lowerBound(end);
+        //范围内原分组位置,偏移后已为当前坐标
+        int[] oldStarts=new int[endIndex-index];
+        System.arraycopy(groupStarts, index, oldStarts, 0, oldStarts.length);
+        removeGroups(index, endIndex);
+        int oldIndex=0;
+        for(int position=start;position<end;position++){
+            boolean groupStart=isGroupStart(items, position);
+            if(groupStart){
+                insertGroup(index++, position);
+            }
+            boolean oldGroupStart=oldIndex<oldStarts.length&&position==oldStarts[oldIndex];
+            if(oldGroupStart){
+                oldIndex++;
+            }
+            if(groupStart!=oldGroupStart&&(position<notifiedStart||position>=notifiedEnd)){
+                flips.add(position, position+1);
+            }
+        }
+        return 0<oldStarts.length||lowerBound(start)<index;
+    }
+
+    private boolean isGroupStart(List items, int position){
+        return isGroupStart(items, position, binaryCondition, condition);
+    }
+
+    private static boolean isGroupStart(List items, int position, BinaryCondition binaryCondition, Condition condition){
+        boolean result;
+        if(null!=binaryCondition){
+            result=0==position||binaryCondition.apply(items.get(position-1), items.get(position));
+        } else {
+            result=condition.apply(items.get(position));
+        }
+        return result;
+    }
+
+    /**
+     * 第一个大于等于position的分组位置角标
+     * @param position
+     * @return
+     */
+    private int lowerBound(int position){
+        int start=0, end=groupCount;
+        while(start<end){
+            int middle=(start+end)>>>1;
+            if(groupStarts[middle]<position){
+                start=middle+1;
             } else {
-                start = middle;
-                break;
+                end=middle;
             }
         }
         return start;
     }
 
+    private void insertGroup(int index, int position){
+        if(groupCount==groupStarts.length){
+            int[] newStarts=new int[Math.max(DEFAULT_CAPACITY, groupStarts.length*2)];
+            System.arraycopy(groupStarts, 0, newStarts, 0, groupCount);
+            groupStarts=newStarts;
+        }
+        System.arraycopy(groupStarts, index, groupStarts, index+1, groupCount-index);
+        groupStarts[index]=position;
+        groupCount++;
+    }
+
+    /**
+     * 移除[fromIndex,toIndex)范围内分组
+     */
+    private void removeGroups(int fromIndex, int toIndex){
+        if(fromIndex<toIndex){
+            System.arraycopy(groupStarts, toIndex, groupStarts, fromIndex, groupCount-toIndex);
+            groupCount-=toIndex-fromIndex;
+        }
+    }
+
+    /**
+     * 按分组位置重建position之后的位集,位置之前不受影响
+     * @param position
+     */
+    private void refreshBits(int position){
+        int words=(adapter.getItems().size()+63)>>>6;
+        if(groupBits.length<words){
+            long[] newBits=new long[Math.max(words, groupBits.length*2)];
+            System.arraycopy(groupBits, 0, newBits, 0, groupBits.length);
+            groupBits=newBits;
+        }
+        int word=Math.max(0, position)>>>6;
+        if(word<groupBits.length){
+            //保留所在字内position之前的位
+            groupBits[word]&=(1L<<(position&63))-1;
+            for(int i=word+1;i<groupBits.length;i++){
+                groupBits[i]=0;
+            }
+        }
+        for(int i=lowerBound(word<<6);i<groupCount;i++){
+            int start=groupStarts[i];
+            if(start>=position){
+                groupBits[start>>>6]|=1L<<start;
+            }
+        }
+    }
 
     /**
      * 刷新定位角标位置
+     * @param notifyFlips 同步计算时是否通知分组起始状态改变的条目,整体刷新时所有条目均会重新绑定,无需通知
      */
-    void refreshIndexItems(){
-        indexArray=null;
+    void refreshIndexItems(boolean notifyFlips){
         if(null== binaryCondition&&null==condition){
             throw new NullPointerException("condition is null!");
-        } else if(null!=binaryCondition){
-            binaryConditionRefresh(adapter.getItems());
-        } else if(null!=condition){
-            conditionRefresh(adapter.getItems());
+        }
+        final int currentGeneration=++generation;
+        if(null==executor){
+            publish(computeGroups(adapter.getItems(), binaryCondition, condition), currentGeneration, notifyFlips);
+        } else {
+            //数据快照与条件均在主线程取得,工作线程只读
+            final List items=new ArrayList(adapter.getItems());
+            final BinaryCondition binaryCondition=this.binaryCondition;
+            final Condition condition=this.condition;
+            executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    final GroupIndex groupIndex=computeGroups(items, binaryCondition, condition);
+                    handler.post(new Runnable() {
+                        @Override
+                        public void run() {
+                            //期间己有新的刷新,丢弃
+                            if(currentGeneration==generation){
+                                //计算期间RecyclerView己按旧分组绑定,需通知状态改变条目
+                                publish(groupIndex, currentGeneration, true);
+                            }
+                        }
+                    });
+                }
+            });
         }
     }
 
-    Integer[] getIndexArray(){
-        if(null==indexArray){
-            indexArray=indexItems.toArray(new Integer[indexItems.size()]);
+    /**
+     * 替换当前分组,只在主线程调用,不在数据监听内调用,可直接通知
+     * @param notifyFlips 是否通知新旧位集不同的条目
+     */
+    private void publish(GroupIndex groupIndex, int generation, boolean notifyFlips){
+        long[] oldBits=groupBits;
+        groupStarts=groupIndex.starts;
+        groupCount=groupIndex.count;
+        groupBits=groupIndex.bits;
+        publishGeneration=generation;
+        if(notifyFlips){
+            addFlips(oldBits, groupBits);
+            flushFlips();
         }
-        return indexArray;
+        dispatchGroupChanged(true);
     }
 
-    void binaryConditionRefresh(List items){
-        indexItems.clear();
-        Object lastItem=null;
-        for(int index=0;index<items.size();index++){
-            Object item = items.get(index);
-            if(null==lastItem|| binaryCondition.apply(lastItem,item)){
-                indexItems.add(index);
+    /**
+     * 新旧位集逐字比较,不同的位记录到flips
+     */
+    private void addFlips(long[] oldBits, long[] newBits){
+        int words=Math.max(oldBits.length, newBits.length);
+        for(int word=0;word<words;word++){
+            long bits=(word<oldBits.length?oldBits[word]:0)^(word<newBits.length?newBits[word]:0);
+            while(0!=bits){
+                int position=(word<<6)+Long.numberOfTrailingZeros(bits);
+                flips.add(position, position+1);
+                bits&=bits-1;
             }
-            lastItem=item;
         }
     }
 
-    void conditionRefresh(List items){
-        indexItems.clear();
-        for(int index=0;index<items.size();index++){
-            Object item = items.get(index);
-            if(condition.apply(item)){
-                indexItems.add(index);
+    /**
+     * 计算全部分组,不访问任何成员,可在工作线程执行
+     */
+    private static GroupIndex computeGroups(List items, BinaryCondition binaryCondition, Condition condition){
+        int size=items.size();
+        int[] starts=new int[DEFAULT_CAPACITY];
+        long[] bits=new long[(size+63)>>>6];
+        int count=0;
+        for(int position=0;position<size;position++){
+            if(isGroupStart(items, position, binaryCondition, condition)){
+                if(count==starts.length){
+                    int[] newStarts=new int[starts.length*2];
+                    System.arraycopy(starts, 0, newStarts, 0, count);
+                    starts=newStarts;
+                }
+                starts[count++]=position;
+                bits[position>>>6]|=1L<<position;
             }
         }
+        return new GroupIndex(starts, count, bits);
+    }
+
+    int[] getIndexArray(){
+        int[] array=new int[groupCount];
+        System.arraycopy(groupStarts, 0, array, 0, groupCount);
+        return array;
+    }
+
+    private static class GroupIndex {
+        final int[] starts;
+        final int count;
+        final long[] bits;
+
+        GroupIndex(int[] starts, int count, long[] bits) {
+            this.starts = starts;
+            this.count = count;
+            this.bits = bits;
+        }
+    }
+
+    public interface OnGroupChangedListener{
+        void onGroupChanged(GroupingStrategy strategy);
     }
 }
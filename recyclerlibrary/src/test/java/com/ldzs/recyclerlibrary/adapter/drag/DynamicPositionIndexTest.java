@@ -0,0 +1,189 @@
+package com.ldzs.recyclerlibrary.adapter.drag;
+
+import android.support.v7.widget.RecyclerView;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * DynamicPositionIndex测试,随机操作结果与有序位置列表逐一比较
+ */
+public class DynamicPositionIndexTest {
+
+    @Test
+    public void insertKeepsOtherPositions() {
+        DynamicPositionIndex index = new DynamicPositionIndex();
+        assertEquals(0, index.insert(4, 1));
+        assertEquals(0, index.insert(1, 2));
+        assertEquals(2, index.insert(9, 3));
+        assertEquals(2, index.insert(5, 4));
+        assertEquals(RecyclerView.NO_POSITION, index.insert(5, 5));
+        assertPositions(index, 1, 4, 5, 9);
+        assertEquals(2, index.viewTypeAt(0));
+        assertEquals(4, index.viewTypeAt(2));
+    }
+
+    @Test
+    public void indexOf() {
+        DynamicPositionIndex index = build(1, 4, 5, 9);
+        assertEquals(RecyclerView.NO_POSITION, index.indexOf(0));
+        assertEquals(0, index.indexOf(1));
+        assertEquals(RecyclerView.NO_POSITION, index.indexOf(3));
+        assertEquals(1, index.indexOf(4));
+        assertEquals(2, index.indexOf(5));
+        assertEquals(3, index.indexOf(9));
+        assertEquals(RecyclerView.NO_POSITION, index.indexOf(10));
+    }
+
+    @Test
+    public void countInsertedBefore() {
+        //全局: d c0 c1 d d c2 c3 c4 d
+        DynamicPositionIndex index = build(0, 3, 4, 8);
+        assertEquals(1, index.countInsertedBefore(0));
+        assertEquals(1, index.countInsertedBefore(1));
+        assertEquals(3, index.countInsertedBefore(2));
+        assertEquals(3, index.countInsertedBefore(4));
+        assertEquals(4, index.countInsertedBefore(5));
+    }
+
+    @Test
+    public void removeRange() {
+        DynamicPositionIndex index = build(1, 4, 5, 9, 12);
+        index.removeRange(1, 3);
+        assertPositions(index, 1, 9, 12);
+        index.removeAt(2);
+        assertPositions(index, 1, 9);
+        index.removeRange(0, 2);
+        assertEquals(0, index.size());
+    }
+
+    @Test
+    public void offset() {
+        DynamicPositionIndex index = build(1, 4, 5, 9);
+        index.offset(2, 3);
+        assertPositions(index, 1, 7, 8, 12);
+        index.offset(9, -1);
+        assertPositions(index, 1, 7, 8, 11);
+    }
+
+    @Test
+    public void setPositionAt() {
+        DynamicPositionIndex index = build(1, 4, 9);
+        index.setPositionAt(1, 6);
+        assertPositions(index, 1, 6, 9);
+        index.setPositionAt(2, 7);
+        assertPositions(index, 1, 6, 7);
+        index.setPositionAt(0, 0);
+        assertPositions(index, 0, 6, 7);
+    }
+
+    @Test
+    public void randomOperations() {
+        Random random = new Random(1);
+        for (int round = 0; round < 500; round++) {
+            DynamicPositionIndex index = new DynamicPositionIndex();
+            List<Integer> positions = new ArrayList<>();
+            for (int step = 0; step < 200; step++) {
+                switch (random.nextInt(5)) {
+                    case 0: {
+                        int position = random.nextInt(64);
+                        int result = index.insert(position, position);
+                        if (positions.contains(position)) {
+                            assertEquals(RecyclerView.NO_POSITION, result);
+                        } else {
+                            int expected = countLess(positions, position);
+                            positions.add(expected, position);
+                            assertEquals(expected, result);
+                        }
+                        break;
+                    }
+                    case 1:
+                        if (!positions.isEmpty()) {
+                            int from = random.nextInt(positions.size());
+                            int to = from + 1 + random.nextInt(Math.min(3, positions.size() - from));
+                            index.removeRange(from, to);
+                            positions.subList(from, to).clear();
+                        }
+                        break;
+                    case 2: {
+                        int from = random.nextInt(64);
+                        int first = countLess(positions, from);
+                        int offset = random.nextInt(9) - 4;
+                        if (first < positions.size()) {
+                            //负向偏移不越过前一个条目
+                            int low = 0 < first ? positions.get(first - 1) + 1 : 0;
+                            offset = Math.max(offset, low - positions.get(first));
+                        }
+                        index.offset(from, offset);
+                        for (int i = first; i < positions.size(); i++) {
+                            positions.set(i, positions.get(i) + offset);
+                        }
+                        break;
+                    }
+                    case 3:
+                        if (!positions.isEmpty()) {
+                            int i = random.nextInt(positions.size());
+                            int low = 0 < i ? positions.get(i - 1) + 1 : 0;
+                            int high = i + 1 < positions.size() ? positions.get(i + 1) - 1 : positions.get(i) + 8;
+                            int position = low + random.nextInt(high - low + 1);
+                            index.setPositionAt(i, position);
+                            positions.set(i, position);
+                        }
+                        break;
+                    default:
+                        break;
+                }
+                assertMatches(index, positions, random);
+            }
+        }
+    }
+
+    private void assertMatches(DynamicPositionIndex index, List<Integer> positions, Random random) {
+        assertEquals(positions.size(), index.size());
+        for (int i = 0; i < positions.size(); i++) {
+            assertEquals(positions.get(i).intValue(), index.positionAt(i));
+        }
+        int max = positions.isEmpty() ? 8 : positions.get(positions.size() - 1) + 8;
+        for (int k = 0; k < 8; k++) {
+            int position = random.nextInt(max);
+            assertEquals(positions.indexOf(position), index.indexOf(position));
+            assertEquals(countLess(positions, position), index.countBefore(position));
+            //第i个动态条目之前的子条目个数为position(i)-i
+            int expected = 0;
+            for (int i = 0; i < positions.size(); i++) {
+                if (positions.get(i) - i <= position) {
+                    expected++;
+                }
+            }
+            assertEquals(expected, index.countInsertedBefore(position));
+        }
+    }
+
+    private static int countLess(List<Integer> positions, int position) {
+        int count = 0;
+        while (count < positions.size() && positions.get(count) < position) {
+            count++;
+        }
+        return count;
+    }
+
+    private static DynamicPositionIndex build(int... positions) {
+        DynamicPositionIndex index = new DynamicPositionIndex();
+        for (int position : positions) {
+            index.insert(position, position);
+        }
+        return index;
+    }
+
+    private static void assertPositions(DynamicPositionIndex index, int... positions) {
+        assertEquals(positions.length, index.size());
+        for (int i = 0; i < positions.length; i++) {
+            assertEquals(positions[i], index.positionAt(i));
+        }
+    }
+}